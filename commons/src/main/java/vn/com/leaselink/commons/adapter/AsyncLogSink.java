@@ -0,0 +1,264 @@
+package vn.com.leaselink.commons.adapter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+import vn.com.leaselink.commons.trace.MdcThreadLocalAccessor;
+import vn.com.leaselink.commons.trace.RequestContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sink dùng chung cho mọi {@link AsyncLogger}: queue MPSC được drain bởi một worker thread riêng theo
+ * batch ({@code maxBatchSize} hoặc mỗi {@code flushInterval}).
+ * <p>
+ * Nhiều producer offer thẳng vào queue không cần serialize, nên không có vòng spin khi các thread cùng
+ * emit. Giới hạn {@code bufferSize} được giữ bằng bộ đếm số dòng chưa ghi và áp dụng ngay lúc offer.
+ * <p>
+ * Message chỉ được format khi worker ghi (SLF4J placeholder), MDC của request được khôi phục từ
+ * {@link RequestContext} chụp lúc emit. Khi buffer đầy, hành vi theo {@link OverflowPolicy}.
+ */
+public class AsyncLogSink implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncLogSink.class);
+
+    private static final Object NO_DATA = new Object();
+    private static final long BLOCK_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static volatile AsyncLogSink defaultSink;
+
+    /**
+     * Xử lý khi buffer đầy
+     */
+    public enum OverflowPolicy {
+        /** bỏ dòng log và tăng bộ đếm dropped */
+        DROP,
+        /** chờ tối đa blockTimeout rồi mới bỏ; không dùng trên event loop */
+        BLOCK,
+        /** ghi đồng bộ trên thread gọi */
+        CALLER_RUNS
+    }
+
+    private final Sinks.Many<Entry> sink;
+    private final Scheduler worker;
+    private final Disposable subscription;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final int bufferSize;
+
+    /**
+     * Số dòng đã nhận mà worker chưa ghi xong
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    public AsyncLogSink(int bufferSize, int maxBatchSize, Duration flushInterval,
+                        OverflowPolicy overflowPolicy, Duration blockTimeout) {
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.bufferSize = bufferSize;
+        // Queue MPSC cho phép emit đồng thời, unsafe() bỏ lớp serialize vốn trả FAIL_NON_SERIALIZED
+        this.sink = Sinks.unsafe().many().unicast().onBackpressureBuffer(Queues.<Entry>unboundedMultiproducer().get());
+        this.worker = Schedulers.newSingle("async-log-sink", true);
+        this.subscription = sink.asFlux()
+                .publishOn(worker, maxBatchSize)
+                .bufferTimeout(maxBatchSize, flushInterval, worker)
+                .doFinally(signal -> terminated.countDown())
+                .subscribe(this::write, error -> log.error("Async log sink terminated", error));
+    }
+
+    /**
+     * Sink mặc định, tạo với cấu hình mặc định nếu chưa được {@link #install(AsyncLogSink)}
+     */
+    public static AsyncLogSink getDefault() {
+        AsyncLogSink current = defaultSink;
+        if (current == null) {
+            synchronized (AsyncLogSink.class) {
+                current = defaultSink;
+                if (current == null) {
+                    current = new AsyncLogSink(8192, 256, Duration.ofMillis(200),
+                            OverflowPolicy.DROP, Duration.ofMillis(100));
+                    defaultSink = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Đặt sink mặc định, sink cũ (nếu có) được flush và dispose
+     */
+    public static synchronized AsyncLogSink install(AsyncLogSink sink) {
+        AsyncLogSink previous = defaultSink;
+        defaultSink = sink;
+        if (previous != null && previous != sink) {
+            previous.dispose();
+        }
+        return sink;
+    }
+
+    void emit(Logger logger, org.slf4j.event.Level level, String message, Object data,
+              Throwable error, RequestContext context) {
+        Entry entry = new Entry(logger, level, message, data, error, context);
+        if (reserve()) {
+            offer(entry);
+        } else {
+            onOverflow(entry);
+        }
+    }
+
+    void emit(Logger logger, org.slf4j.event.Level level, String message, Throwable error, RequestContext context) {
+        emit(logger, level, message, NO_DATA, error, context);
+    }
+
+    /**
+     * Giữ một chỗ trong buffer, false nếu đã đủ {@code bufferSize} dòng chưa ghi
+     */
+    private boolean reserve() {
+        if (pending.incrementAndGet() <= bufferSize) {
+            return true;
+        }
+        pending.decrementAndGet();
+        return false;
+    }
+
+    private void offer(Entry entry) {
+        if (sink.tryEmitNext(entry).isSuccess()) {
+            queued.increment();
+            return;
+        }
+        // Sink đã đóng (shutdown): ghi đồng bộ để không mất log
+        pending.decrementAndGet();
+        callerRuns.increment();
+        write(entry);
+    }
+
+    private void onOverflow(Entry entry) {
+        switch (overflowPolicy) {
+            case DROP -> dropped.increment();
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                write(entry);
+            }
+            case BLOCK -> {
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (System.nanoTime() - deadline < 0) {
+                    LockSupport.parkNanos(BLOCK_BACKOFF_NANOS);
+                    if (reserve()) {
+                        offer(entry);
+                        return;
+                    }
+                }
+                dropped.increment();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        for (Entry entry : batch) {
+            write(entry);
+        }
+        pending.addAndGet(-batch.size());
+        flushed.add(batch.size());
+    }
+
+    private static void write(Entry entry) {
+        MdcThreadLocalAccessor.get().runWith(entry.context(), () -> {
+            try {
+                entry.log();
+            } catch (RuntimeException e) {
+                log.warn("Failed to write async log entry: {}", e.getMessage());
+            }
+        });
+    }
+
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getFlushedCount() {
+        return flushed.sum();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * Đóng sink, chờ worker ghi nốt các dòng còn trong buffer
+     */
+    public void dispose() {
+        sink.tryEmitComplete();
+        try {
+            if (!terminated.await(5, TimeUnit.SECONDS)) {
+                log.warn("Async log sink did not drain within 5s, {} entries pending",
+                        queued.sum() - flushed.sum());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        subscription.dispose();
+        worker.dispose();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("logging.async.queued", this, AsyncLogSink::getQueuedCount)
+                .register(registry);
+        FunctionCounter.builder("logging.async.dropped", this, AsyncLogSink::getDroppedCount)
+                .description("Số dòng log bị bỏ do buffer đầy")
+                .register(registry);
+        FunctionCounter.builder("logging.async.flushed", this, AsyncLogSink::getFlushedCount)
+                .register(registry);
+        FunctionCounter.builder("logging.async.caller.runs", this, AsyncLogSink::getCallerRunsCount)
+                .register(registry);
+        Gauge.builder("logging.async.queue.depth", this, s -> s.getQueuedCount() - s.getFlushedCount())
+                .register(registry);
+    }
+
+    /**
+     * Một dòng log chưa format
+     */
+    private record Entry(Logger logger, org.slf4j.event.Level level, String message, Object data,
+                         Throwable error, RequestContext context) {
+
+        void log() {
+            switch (level) {
+                case ERROR -> logger.error(message, error);
+                case WARN -> logger.warn(message, error);
+                case DEBUG -> logger.debug(message);
+                case TRACE -> logger.trace(message);
+                default -> {
+                    if (data != NO_DATA) {
+                        logger.info("{}:{}", message, data);
+                    } else {
+                        logger.info(message);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -2,32 +2,63 @@ package vn.com.leaselink.commons.adapter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
-
+import vn.com.leaselink.commons.trace.RequestContext;
 
+/**
+ * Logger bất đồng bộ cho reactive chain. Mỗi dòng log được đẩy vào {@link AsyncLogSink} dùng chung
+ * (không hop sang boundedElastic, không nối chuỗi trên thread gọi), MDC của request đi kèm qua RequestContext.
+ */
 public class AsyncLogger {
     private final Logger logger;
+    private final AsyncLogSink sink;
 
     public AsyncLogger(Class <?> clazz) {
+        this(clazz, null);
+    }
+
+    /**
+     * @param sink sink riêng; null = dùng {@link AsyncLogSink#getDefault()} tại thời điểm log
+     */
+    public AsyncLogger(Class<?> clazz, AsyncLogSink sink) {
         this.logger = LoggerFactory.getLogger(clazz);
+        this.sink = sink;
     }
 
     public Mono<Void> info(String message) {
-        return Mono.fromRunnable(() -> logger.info(message))
-                .subscribeOn(Schedulers.boundedElastic())
-                .then();
+        if (!logger.isInfoEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.deferContextual(ctx -> {
+            sink().emit(logger, Level.INFO, message, null, RequestContext.fromContext(ctx));
+            return Mono.empty();
+        });
     }
 
     public Mono<Void> error(String message, Throwable throwable) {
-        return Mono.fromRunnable(() -> logger.error(message, throwable))
-                .subscribeOn(Schedulers.boundedElastic())
-                .then();
+        if (!logger.isErrorEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.deferContextual(ctx -> {
+            sink().emit(logger, Level.ERROR, message, throwable, RequestContext.fromContext(ctx));
+            return Mono.empty();
+        });
     }
 
     public <T> Mono<T> infoWithContext(T data, String message) {
-        return info(message+ ":" + data).thenReturn(data);
+        if (!logger.isInfoEnabled()) {
+            return Mono.justOrEmpty(data);
+        }
+        return Mono.deferContextual(ctx -> {
+            // "message:data" được format trên worker
+            sink().emit(logger, Level.INFO, message, data, null, RequestContext.fromContext(ctx));
+            return Mono.justOrEmpty(data);
+        });
+    }
+
+    private AsyncLogSink sink() {
+        return sink != null ? sink : AsyncLogSink.getDefault();
     }
 
 }
@@ -1,5 +1,6 @@
 package vn.com.leaselink.commons.exception;
 
+import brave.Span;
 import brave.Tracer;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
@@ -14,15 +15,18 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 import vn.com.leaselink.commons.enumeration.HttpStatusOutcome;
+import vn.com.leaselink.commons.jfr.JfrEvents;
 import vn.com.leaselink.commons.log.EnhancedReactiveLogger;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+import vn.com.leaselink.commons.trace.HttpServerTracing;
+import vn.com.leaselink.commons.trace.RequestContext;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Order(-2) // Cao hơn DefaultErrorWebExceptionHandler (-1)
@@ -33,6 +37,7 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
 
     private final Tracer tracer;
     private final MeterRegistry meterRegistry;
+    private final RouteNormalizer routeNormalizer;
 
 
 
@@ -40,16 +45,14 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
 
     @Override
     public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
-        // Lấy request ID và thông tin từ exchange
-        String requestId = exchange.getAttribute("requestId");
-        String path = exchange.getRequest().getPath().value();
-        String method = exchange.getRequest().getMethod().name();
+        // Lấy request ID và thông tin từ RequestContext đã parse trong filter
+        RequestContext requestContext = RequestContext.fromExchange(exchange);
+        String requestId = requestContext != null ? requestContext.getRequestId() : null;
+        String path = requestContext != null ? requestContext.getPath() : exchange.getRequest().getPath().value();
+        String method = requestContext != null ? requestContext.getMethod() : exchange.getRequest().getMethod().name();
 
-        // Lấy thời gian bắt đầu request nếu có
-        Instant startTime = exchange.getAttribute("startTime");
-        long processingTimeMs = startTime != null
-                ? Duration.between(startTime, Instant.now()).toMillis()
-                : -1;
+        // Thời gian xử lý tính từ lúc filter parse request, nếu có
+        long processingTimeNanos = requestContext != null ? requestContext.elapsedNanos() : -1;
 
         // Xác định HTTP status và thông báo lỗi
         HttpStatus status = determineStatus(ex);
@@ -61,20 +64,30 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
                 method, path, requestId, status.value(), outcome.name(), errorMessage, ex);
 
         // Record error metrics
-        recordErrorMetrics(path, method, status.value(), ex, requestId, processingTimeMs);
+        String route = routeNormalizer.normalize(exchange, path);
+        recordErrorMetrics(route, method, status.value(), ex, processingTimeNanos);
+        JfrEvents.errorHandled(requestContext, method, route, status.value(), ex, processingTimeNanos);
 
         // Thêm thông tin từ Tracer nếu có
         String traceId = null;
         String spanId = null;
-        if (tracer.currentSpan() != null) {
-            traceId = tracer.currentSpan().context().traceIdString();
-            spanId = tracer.currentSpan().context().spanIdString();
+        // Server span do filter tạo, tracer.currentSpan() chỉ có khi handler chạy trong scope của span
+        Span span = HttpServerTracing.currentSpan(exchange);
+        if (span == null) {
+            span = tracer.currentSpan();
+        }
+        if (span != null) {
+            traceId = span.context().traceIdString();
+            spanId = span.context().spanIdString();
 
             // Log error vào span
-            tracer.currentSpan()
+            span
                     .error(ex)
                     .tag("http.status_code", String.valueOf(status.value()))
                     .tag("error", ex.getClass().getSimpleName());
+        } else if (requestContext != null) {
+            traceId = requestContext.getTraceId();
+            spanId = requestContext.getSpanId();
         }
 
         // Tạo response body
@@ -94,6 +107,7 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
             errorBody.put("spanId", spanId);
         }
 
+        long processingTimeMs = TimeUnit.NANOSECONDS.toMillis(processingTimeNanos);
         if (processingTimeMs > 0) {
             errorBody.put("processingTimeMs", processingTimeMs);
         }
@@ -152,39 +166,25 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
     /**
      * Ghi nhận metrics cho errors
      */
-    private void recordErrorMetrics(String path, String method, int statusCode,
-                                    Throwable error, String requestId, long processingTimeMs) {
+    private void recordErrorMetrics(String route, String method, int statusCode,
+                                    Throwable error, long processingTimeNanos) {
         List<Tag> tags = new ArrayList<>();
-        tags.add(Tag.of("path", normalizePath(path)));
+        tags.add(Tag.of("path", route));
         tags.add(Tag.of("method", method));
         tags.add(Tag.of("status", String.valueOf(statusCode)));
         tags.add(Tag.of("outcome", HttpStatusOutcome.fromStatusCode(statusCode).name()));
         tags.add(Tag.of("exception", error.getClass().getSimpleName()));
 
-        // Thêm request ID nếu có
-        if (requestId != null) {
-            tags.add(Tag.of("requestId", requestId));
-        }
-
         // Đếm số lượng lỗi
         meterRegistry.counter("http.server.errors", tags).increment();
 
         // Ghi nhận thời gian xử lý nếu có
-        if (processingTimeMs > 0) {
+        if (processingTimeNanos > 0) {
             meterRegistry.timer("http.server.requests", tags)
-                    .record(Duration.ofMillis(processingTimeMs));
+                    .record(processingTimeNanos, TimeUnit.NANOSECONDS);
         }
     }
 
-    /**
-     * Normalize đường dẫn để giảm cardinality của metrics
-     */
-    private String normalizePath(String path) {
-        // Normalize các path parameters như /users/123 thành /users/{id}
-        return path.replaceAll("/[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "/{uuid}")
-                .replaceAll("/[0-9]+", "/{id}");
-    }
-
     /**
      * Serialize error body thành JSON
      */
@@ -0,0 +1,117 @@
+package vn.com.leaselink.commons.filter;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bộ đệm giới hạn dùng để tee tối đa {@code maxLength} byte đầu tiên của body.
+ * <p>
+ * Bộ đệm được cấp phát lazy từ {@link DataBufferFactory} của response (pooled trên Netty)
+ * và phải được {@link #release()} khi exchange kết thúc, kể cả khi bị cancel.
+ * Các DataBuffer đi qua chỉ được đọc, read position không thay đổi.
+ */
+public class PayloadCapture {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final DataBufferFactory bufferFactory;
+    private final int maxLength;
+
+    private DataBuffer buffer;
+    private int captured;
+    private boolean truncated;
+    private boolean released;
+
+    public PayloadCapture(DataBufferFactory bufferFactory, int maxLength) {
+        this.bufferFactory = bufferFactory;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Copy phần còn thiếu (tối đa maxLength) từ buffer đang được forward, không thay đổi buffer gốc
+     */
+    public synchronized void append(DataBuffer source) {
+        int readable = source.readableByteCount();
+        if (released || readable == 0) {
+            return;
+        }
+        int length = Math.min(maxLength - captured, readable);
+        if (length < readable) {
+            truncated = true;
+        }
+        if (length <= 0) {
+            return;
+        }
+        if (buffer == null) {
+            buffer = bufferFactory.allocateBuffer(Math.min(maxLength, Math.max(length, INITIAL_CAPACITY)));
+        }
+        buffer.ensureWritable(length);
+        try (DataBuffer.ByteBufferIterator iterator = source.readableByteBuffers()) {
+            int remaining = length;
+            while (remaining > 0 && iterator.hasNext()) {
+                ByteBuffer byteBuffer = iterator.next();
+                int chunk = Math.min(remaining, byteBuffer.remaining());
+                buffer.write(byteBuffer.limit(byteBuffer.position() + chunk));
+                remaining -= chunk;
+            }
+        }
+        captured += length;
+    }
+
+    public synchronized boolean isEmpty() {
+        return released || captured == 0;
+    }
+
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Copy phần đã capture ra byte[], trả về mảng rỗng nếu đã release
+     */
+    public synchronized byte[] toByteArray() {
+        if (released || buffer == null) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(bytes), 0, bytes.length);
+        return bytes;
+    }
+
+    public synchronized String asString() {
+        return new String(toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Trả buffer về pool, an toàn khi gọi nhiều lần
+     */
+    public synchronized void release() {
+        if (!released) {
+            released = true;
+            if (buffer != null) {
+                DataBufferUtils.release(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Chỉ capture các payload dạng text, bỏ qua upload/binary
+     */
+    public static boolean isCapturable(MediaType contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        return MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+                || MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)
+                || MediaType.APPLICATION_XML.isCompatibleWith(contentType)
+                || "text".equals(contentType.getType())
+                || contentType.getSubtype().endsWith("+json")
+                || contentType.getSubtype().endsWith("+xml");
+    }
+}
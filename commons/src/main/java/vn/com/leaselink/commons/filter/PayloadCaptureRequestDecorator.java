@@ -0,0 +1,28 @@
+package vn.com.leaselink.commons.filter;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import reactor.core.publisher.Flux;
+
+/**
+ * Tee phần đầu của request body vào {@link PayloadCapture}, body vẫn được forward nguyên vẹn
+ */
+public class PayloadCaptureRequestDecorator extends ServerHttpRequestDecorator {
+
+    private final PayloadCapture capture;
+
+    public PayloadCaptureRequestDecorator(ServerHttpRequest delegate, PayloadCapture capture) {
+        super(delegate);
+        this.capture = capture;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return super.getBody().doOnNext(capture::append);
+    }
+
+    public PayloadCapture getCapture() {
+        return capture;
+    }
+}
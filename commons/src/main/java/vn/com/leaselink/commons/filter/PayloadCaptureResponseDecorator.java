@@ -0,0 +1,47 @@
+package vn.com.leaselink.commons.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Tee phần đầu của response body vào {@link PayloadCapture} trước khi buffer được ghi ra socket.
+ * Body dạng Mono được giữ nguyên là Mono để không mất tối ưu Content-Length của server.
+ */
+public class PayloadCaptureResponseDecorator extends ServerHttpResponseDecorator {
+
+    private final PayloadCapture capture;
+
+    public PayloadCaptureResponseDecorator(ServerHttpResponse delegate, PayloadCapture capture) {
+        super(delegate);
+        this.capture = capture;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        if (!PayloadCapture.isCapturable(getHeaders().getContentType())) {
+            return super.writeWith(body);
+        }
+        if (body instanceof Mono) {
+            return super.writeWith(((Mono<DataBuffer>) body).doOnNext(capture::append));
+        }
+        return super.writeWith(Flux.from(body).doOnNext(capture::append));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        if (!PayloadCapture.isCapturable(getHeaders().getContentType())) {
+            return super.writeAndFlushWith(body);
+        }
+        return super.writeAndFlushWith(Flux.from(body)
+                .map(publisher -> Flux.from(publisher).doOnNext(capture::append)));
+    }
+
+    public PayloadCapture getCapture() {
+        return capture;
+    }
+}
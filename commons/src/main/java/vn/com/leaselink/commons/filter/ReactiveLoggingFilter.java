@@ -1,156 +1,273 @@
 package vn.com.leaselink.commons.filter;
 
-import brave.Tracer;
+import brave.Span;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
-import reactor.util.context.Context;
+import reactor.core.publisher.SignalType;
 import vn.com.leaselink.commons.enumeration.CodeResponse;
-import vn.com.leaselink.commons.trace.ReactiveContextPropagation;
+import vn.com.leaselink.commons.jfr.HttpExchangeEvent;
+import vn.com.leaselink.commons.jfr.JfrEvents;
+import vn.com.leaselink.commons.log.LogSampler;
+import vn.com.leaselink.commons.log.LoggingProperties;
+import vn.com.leaselink.commons.log.SensitiveDataMasker;
+import vn.com.leaselink.commons.metrics.ExemplarStore;
+import vn.com.leaselink.commons.metrics.LatencyHistograms;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+import vn.com.leaselink.commons.metrics.SlowRequestDetector;
+import vn.com.leaselink.commons.trace.HttpServerTracing;
+import vn.com.leaselink.commons.trace.IdGenerator;
+import vn.com.leaselink.commons.trace.MdcThreadLocalAccessor;
+import vn.com.leaselink.commons.trace.RequestContext;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.UUID;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
+/**
+ * Filter đầu tiên của mỗi request: tạo server span từ header, dựng {@link RequestContext} (trace/span ID của
+ * span đó), log request/response với MDC, ghi metrics / exemplar / histogram latency theo route / JFR và kết thúc span với route và status.
+ */
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
 @AllArgsConstructor
 public class ReactiveLoggingFilter implements WebFilter{
     private static final Logger log = LoggerFactory.getLogger(ReactiveLoggingFilter.class);
 
-    private final Tracer tracer;
+    private final HttpServerTracing serverTracing;
+    private final IdGenerator idGenerator;
+    private final LogSampler logSampler;
+    private final LoggingProperties properties;
+    private final SensitiveDataMasker masker;
+    private final SlowRequestDetector slowRequestDetector;
+    private final RouteNormalizer routeNormalizer;
+    private final ExemplarStore exemplarStore;
+    private final LatencyHistograms latencyHistograms;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
-        Instant startTime = Instant.now();
-
-        String requestPath = request.getPath().value();
-        String method = request.getMethod().name();
-        String clientIP = getClientIP(request);
-        String userAgent = getUserAgent(request);
-
-        // Lấy hoặc tạo các ID cần thiết cho tracing
-        String requestId = getOrCreateRequestsId(request);
-        String traceId = getOrCreateTraceId();
-        String spanId = getOrCreateSpanId();
-        String userId = getUserId(request);
-        String sessionId = getSessionId(request);
-        String tenantId = getTenantId(request);
-
-        // Log request
-        log.info("Request: {} {} from {} [User-Agent: {}] [requestId: {}] [traceId: {}]",
-                method, requestPath, clientIP, userAgent, requestId, traceId);
-
-        // Tạo context để truyền xuyên suốt reactive stream
-        Context context = ReactiveContextPropagation.createContext(
-                requestId, traceId, spanId, userId, sessionId, tenantId);
-
-        MDC.put("requestId", requestId);
-        MDC.put("traceId", traceId);
-        MDC.put("spanId", spanId);
-        MDC.put("method", method);
-        MDC.put("path", requestPath);
-
-        if (userId != null) MDC.put("userId", userId);
-        if (tenantId != null) MDC.put("tenantId", tenantId);
+
+        // Server span (join upstream hoặc trace mới), ID của span là trace/span ID của request
+        Span span = serverTracing.startSpan(request);
+        String traceId = span.context().traceIdString();
+
+        // Parse request một lần, dùng chung cho logging, metrics và error handling
+        RequestContext requestContext = RequestContext.parse(request,
+                getOrCreateRequestsId(request), traceId, span.context().spanIdString(),
+                logSampler.isSampled(traceId), Boolean.TRUE.equals(span.context().sampled()));
+        if (!span.isNoop()) {
+            span.remoteIpAndPort(requestContext.getClientIp(), 0);
+        }
+        // null khi JFR event không được bật
+        HttpExchangeEvent jfrEvent = JfrEvents.beginHttpExchange(requestContext);
+
+        // Log request, MDC chỉ được đặt trong lúc log và khôi phục ngay sau đó
+        MdcThreadLocalAccessor mdc = MdcThreadLocalAccessor.get();
+        if (requestContext.isSampled()) {
+            mdc.runWith(requestContext, () ->
+                    log.info("Request: {} {}{} from {} [User-Agent: {}] [requestId: {}] [traceId: {}]{}",
+                            requestContext.getMethod(), requestContext.getPath(), formatQuery(request),
+                            requestContext.getClientIp(), requestContext.getUserAgent(),
+                            requestContext.getRequestId(), requestContext.getTraceId(), formatHeaders(request)));
+        }
 
         // Thêm thông tin vào request attributes
-        exchange.getAttributes().put("requestId", requestId);
-        exchange.getAttributes().put("startTime", startTime);
+        requestContext.bindTo(exchange);
+        exchange.getAttributes().put(HttpServerTracing.SPAN_ATTRIBUTE, span);
 
         // Thêm headers vào response
-        exchange.getResponse().getHeaders().add("X-Request-ID", requestId);
-        exchange.getResponse().getHeaders().add("X-Trace-ID", traceId);
-
-        // Xử lý request và log response
-        return chain.filter(exchange)
-                .contextWrite(context)
-                .doOnSuccess(v -> logResponse(exchange, startTime, null))
-                .doOnError(error -> logResponse(exchange, startTime, error))
-                .doFinally(signalType -> MDC.clear());
-    }
+        exchange.getResponse().getHeaders().add(RequestContext.REQUEST_ID_HEADER, requestContext.getRequestId());
+        exchange.getResponse().getHeaders().add(RequestContext.TRACE_ID_HEADER, requestContext.getTraceId());
 
-    private void logResponse(ServerWebExchange exchange, Instant startTime, Throwable error) {
-        long durationMS = Duration.between(startTime, Instant.now()).toMillis();
-        int statusCode = exchange.getResponse().getStatusCode() != null
-                ? exchange.getResponse().getStatusCode().value() :
-                CodeResponse.ServerErrorCode.INTERNAL_SERVER.getIntCode();
+        // Tee payload nếu được bật, buffer luôn được release trong doFinally (kể cả khi cancel)
+        ServerWebExchange loggedExchange = capturePayloads(exchange, requestContext);
 
-        String requestId = (String) exchange.getAttributes().get("requestId");
-        String requestPath= exchange.getRequest().getPath().value();
-        String method= exchange.getRequest().getMethod().name();
-        if(error != null) {
-            log.error("Response: {} {} - Status: {} - Time: {}ms [requestId: {}] - Error: {}",
-                    method, requestPath, statusCode, durationMS, requestId, error.getMessage(), error);
-        } else {
-            log.info("Response: {} {} - Status: {} - Time: {}ms [requestId: {}]",
-                    method, requestPath, statusCode, durationMS, requestId);
-        }
+        // Log response / kết thúc span đúng một lần, dù qua doOnSuccess, beforeCommit hay cancel
+        AtomicBoolean completed = new AtomicBoolean();
+
+        // Xử lý request và log response; MDC trong chain được khôi phục bởi MdcThreadLocalAccessor
+        return chain.filter(loggedExchange)
+                .contextWrite(requestContext::writeTo)
+                .doOnSuccess(v -> mdc.runWith(requestContext,
+                        () -> complete(loggedExchange, requestContext, span, completed, null)))
+                .doOnError(error -> mdc.runWith(requestContext,
+                        () -> complete(loggedExchange, requestContext, span, completed, error)))
+                .doFinally(signalType -> {
+                    if (signalType == SignalType.CANCEL && !completed.get()) {
+                        serverTracing.cancelSpan(span);
+                        // Client huỷ trước khi có response: response không bao giờ được commit, ghi với status
+                        // hiện tại để span, log, slow request và exemplar không bị mất
+                        mdc.runWith(requestContext, () -> complete(loggedExchange, requestContext, span, completed,
+                                requestContext.elapsedNanos(), null, null));
+                    }
+                    releasePayloads(loggedExchange);
+                    if (jfrEvent != null) {
+                        JfrEvents.commitHttpExchange(jfrEvent,
+                                routeNormalizer.normalize(loggedExchange, requestContext.getPath()),
+                                statusCode(loggedExchange), signalType.toString());
+                    }
+                });
+    }
 
-        if(durationMS > 1000) {
-            log.warn("Slow request detected: {} {} - {}ms [requestId: {}]", method, requestPath, durationMS, requestId);
+    private void complete(ServerWebExchange exchange, RequestContext requestContext, Span span,
+                          AtomicBoolean completed, Throwable error) {
+        long durationNanos = requestContext.elapsedNanos();
+        if (error == null || exchange.getResponse().isCommitted()) {
+            complete(exchange, requestContext, span, completed, durationNanos, error, null);
+            return;
         }
+        // Status của response lỗi do GlobalErrorHandler đặt sau filter: log, slow request, exemplar và span
+        // được ghi khi response được commit để lấy đúng status. Payload bị release trong doFinally trước đó
+        // nên được format ngay (request lỗi luôn được log)
+        String payloads = formatPayloads(exchange);
+        exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> MdcThreadLocalAccessor.get()
+                .runWith(requestContext, () -> complete(exchange, requestContext, span, completed, durationNanos,
+                        error, payloads))));
     }
 
-//    TODO Helper methods
-    private String getOrCreateRequestsId (ServerHttpRequest request) {
-        String requestId = request.getHeaders().getFirst("X-Request-ID");
-        return (requestId != null) ? requestId : UUID.randomUUID().toString();
+    /**
+     * @param completed chỉ lần gọi đầu tiên được ghi, các lần sau (cancel sau khi đã ghi, ...) bị bỏ qua
+     * @param payloads  payload đã format, null = format từ exchange khi cần log
+     */
+    private void complete(ServerWebExchange exchange, RequestContext requestContext, Span span,
+                          AtomicBoolean completed, long durationNanos, Throwable error, String payloads) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        String route = routeNormalizer.normalize(exchange, requestContext.getPath());
+        int statusCode = statusCode(exchange);
+        logResponse(exchange, requestContext, route, durationNanos, statusCode, error, payloads);
+        serverTracing.finishSpan(span, requestContext.getMethod(), route, statusCode, error);
     }
 
-    private String getOrCreateTraceId() {
-        try {
-            return tracer.currentSpan() !=null
-                    ? tracer.currentSpan().context().traceIdString()
-                    : UUID.randomUUID().toString();
-        } catch (Exception e) {
-            return UUID.randomUUID().toString();
+    private ServerWebExchange capturePayloads(ServerWebExchange exchange, RequestContext requestContext) {
+        int maxPayloadLength = properties.getMaxPayloadLength();
+        if (!properties.isIncludePayload() || !requestContext.isSampled() || maxPayloadLength <= 0) {
+            return exchange;
+        }
+        DataBufferFactory bufferFactory = exchange.getResponse().bufferFactory();
+        ServerWebExchange.Builder builder = exchange.mutate()
+                .response(new PayloadCaptureResponseDecorator(exchange.getResponse(),
+                        new PayloadCapture(bufferFactory, maxPayloadLength)));
+        if (PayloadCapture.isCapturable(exchange.getRequest().getHeaders().getContentType())) {
+            builder.request(new PayloadCaptureRequestDecorator(exchange.getRequest(),
+                    new PayloadCapture(bufferFactory, maxPayloadLength)));
         }
+        return builder.build();
     }
 
-    private String getOrCreateSpanId() {
-        try {
-            // Sử dụng Brave Tracer nếu đã được khởi tạo
-            return tracer.currentSpan() != null
-                    ? tracer.currentSpan().context().spanIdString()
-                    : UUID.randomUUID().toString();
-        } catch (Exception e) {
-            return UUID.randomUUID().toString();
+    private void releasePayloads(ServerWebExchange exchange) {
+        if (exchange.getRequest() instanceof PayloadCaptureRequestDecorator request) {
+            request.getCapture().release();
+        }
+        if (exchange.getResponse() instanceof PayloadCaptureResponseDecorator response) {
+            response.getCapture().release();
         }
     }
 
-    private String getUserId(ServerHttpRequest request) {
-        return request.getHeaders().getFirst("X-User-ID");
+    private String formatQuery(ServerHttpRequest request) {
+        if (!properties.getRequest().isIncludeQueryParams()) {
+            return "";
+        }
+        String query = request.getURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        return "?" + (properties.isMaskSensitiveData() ? masker.maskQueryString(query) : query);
     }
 
-    private String getSessionId(ServerHttpRequest request) {
-        return request.getHeaders().getFirst("X-Session-ID");
+    private String formatHeaders(ServerHttpRequest request) {
+        if (!properties.getRequest().isIncludeHeaders()) {
+            return "";
+        }
+        Map<String, List<String>> headers = properties.isMaskSensitiveData()
+                ? masker.maskHeaders(request.getHeaders())
+                : request.getHeaders();
+        return " [headers: " + headers + "]";
     }
 
-    private String getTenantId(ServerHttpRequest request) {
-        return request.getHeaders().getFirst("X-Tenant-ID");
+    private String formatPayloads(ServerWebExchange exchange) {
+        StringBuilder sb = null;
+        if (exchange.getRequest() instanceof PayloadCaptureRequestDecorator request
+                && !request.getCapture().isEmpty()) {
+            sb = appendPayload(new StringBuilder(), "requestBody", request.getCapture(),
+                    request.getHeaders().getContentType());
+        }
+        if (exchange.getResponse() instanceof PayloadCaptureResponseDecorator response
+                && !response.getCapture().isEmpty()) {
+            sb = appendPayload(sb != null ? sb : new StringBuilder(), "responseBody", response.getCapture(),
+                    response.getHeaders().getContentType());
+        }
+        return sb != null ? sb.toString() : "";
     }
 
-    private String getClientIP(ServerHttpRequest request) {
-        String forwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
-        return forwardedFor != null ? forwardedFor.split(",")[0].trim() : request.getRemoteAddress().getHostString();
+    private StringBuilder appendPayload(StringBuilder sb, String name, PayloadCapture capture, MediaType contentType) {
+        sb.append(" [").append(name).append(": ");
+        if (properties.isMaskSensitiveData()) {
+            sb.append(masker.maskPayload(capture.toByteArray(), contentType, capture.isTruncated()));
+        } else {
+            sb.append(capture.asString());
+            if (capture.isTruncated()) {
+                sb.append(SensitiveDataMasker.TRUNCATED_MARKER);
+            }
+        }
+        return sb.append(']');
     }
 
-    private String getUserAgent(ServerHttpRequest request) {
-        return request.getHeaders().getFirst("User-Agent");
+    private static int statusCode(ServerWebExchange exchange) {
+        return exchange.getResponse().getStatusCode() != null
+                ? exchange.getResponse().getStatusCode().value() :
+                CodeResponse.ServerErrorCode.INTERNAL_SERVER.getIntCode();
     }
 
+    private void logResponse(ServerWebExchange exchange, RequestContext requestContext, String route,
+                             long durationNanos, int statusCode, Throwable error, String payloads) {
+        long durationMS = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        // Ngưỡng chậm theo route, event chi tiết được ghi vào PERF log; traceId được giữ làm exemplar của route
+        boolean slow = slowRequestDetector.record(route, requestContext, durationNanos, statusCode);
+        exemplarStore.record(route, requestContext, durationNanos, statusCode);
+        latencyHistograms.record(LatencyHistograms.HTTP, route, durationNanos);
+
+        // Request không được sample vẫn log nếu lỗi hoặc chậm
+        if (!requestContext.isSampled() && error == null && statusCode < 500 && !slow) {
+            return;
+        }
 
+        String requestId = requestContext.getRequestId();
+        String requestPath = requestContext.getPath();
+        String method = requestContext.getMethod();
+        if (payloads == null) {
+            payloads = formatPayloads(exchange);
+        }
+        if(error != null) {
+            log.error("Response: {} {} - Status: {} - Time: {}ms [requestId: {}]{} - Error: {}",
+                    method, requestPath, statusCode, durationMS, requestId, payloads, error.getMessage(), error);
+        } else if (!slow) {
+            log.info("Response: {} {} - Status: {} - Time: {}ms [requestId: {}]{}",
+                    method, requestPath, statusCode, durationMS, requestId, payloads);
+        } else {
+            log.warn("Slow response: {} {} - Status: {} - Time: {}ms [requestId: {}]{}",
+                    method, requestPath, statusCode, durationMS, requestId, payloads);
+        }
+    }
+
+//    TODO Helper methods
+    private String getOrCreateRequestsId (ServerHttpRequest request) {
+        String requestId = request.getHeaders().getFirst(RequestContext.REQUEST_ID_HEADER);
+        return (requestId != null) ? requestId : idGenerator.nextId();
+    }
 
 }
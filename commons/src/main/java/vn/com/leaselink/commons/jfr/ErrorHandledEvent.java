@@ -0,0 +1,46 @@
+package vn.com.leaselink.commons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Lỗi được GlobalErrorHandler xử lý, duration của event là thời gian xử lý lỗi
+ */
+@Name("vn.com.leaselink.ErrorHandled")
+@Label("Error Handled")
+@Category({"LeaseLink", "HTTP"})
+@Description("Exception được GlobalErrorHandler chuyển thành response lỗi")
+@StackTrace(false)
+public class ErrorHandledEvent extends Event {
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    String route;
+
+    @Label("Status")
+    int status;
+
+    @Label("Exception")
+    String exceptionClass;
+
+    @Label("Message")
+    String message;
+
+    @Label("Processing Time")
+    @Description("Thời gian từ lúc nhận request tới khi lỗi được xử lý")
+    @Timespan(Timespan.NANOSECONDS)
+    long processingTime;
+}
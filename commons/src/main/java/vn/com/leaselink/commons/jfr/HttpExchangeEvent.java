@@ -0,0 +1,44 @@
+package vn.com.leaselink.commons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Một HTTP exchange, từ lúc ReactiveLoggingFilter nhận request tới khi response kết thúc
+ */
+@Name("vn.com.leaselink.HttpExchange")
+@Label("HTTP Exchange")
+@Category({"LeaseLink", "HTTP"})
+@Description("Request xử lý bởi ReactiveLoggingFilter")
+@StackTrace(false)
+public class HttpExchangeEvent extends Event {
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Trace Id")
+    String traceId;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Route")
+    String route;
+
+    @Label("Status")
+    int status;
+
+    @Label("Signal")
+    @Description("Signal kết thúc: onComplete, onError hoặc cancel")
+    String signal;
+
+    @Label("Tenant Id")
+    String tenantId;
+}
@@ -0,0 +1,136 @@
+package vn.com.leaselink.commons.jfr;
+
+import jdk.jfr.EventType;
+import reactor.core.publisher.Mono;
+import vn.com.leaselink.commons.trace.RequestContext;
+
+import java.util.function.Function;
+
+/**
+ * Tạo và commit các JFR event của commons.
+ * <p>
+ * Các hàm {@code begin*} trả về null khi event không được bật trong recording đang chạy, nên khi không
+ * record thì chi phí chỉ là một lần đọc {@link EventType#isEnabled()}; các hàm commit bỏ qua event null.
+ */
+public final class JfrEvents {
+
+    public static final String PUBLISH = "publish";
+    public static final String CONSUME = "consume";
+
+    private static final EventType HTTP_EXCHANGE = EventType.getEventType(HttpExchangeEvent.class);
+    private static final EventType OPERATION = EventType.getEventType(OperationEvent.class);
+    private static final EventType ERROR_HANDLED = EventType.getEventType(ErrorHandledEvent.class);
+    private static final EventType QUEUE = EventType.getEventType(QueueEvent.class);
+
+    private JfrEvents() {
+    }
+
+    public static HttpExchangeEvent beginHttpExchange(RequestContext requestContext) {
+        if (!HTTP_EXCHANGE.isEnabled()) {
+            return null;
+        }
+        HttpExchangeEvent event = new HttpExchangeEvent();
+        event.begin();
+        event.requestId = requestContext.getRequestId();
+        event.traceId = requestContext.getTraceId();
+        event.method = requestContext.getMethod();
+        event.path = requestContext.getPath();
+        event.tenantId = requestContext.getTenantId();
+        return event;
+    }
+
+    public static void commitHttpExchange(HttpExchangeEvent event, String route, int status, String signal) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.route = route;
+            event.status = status;
+            event.signal = signal;
+            event.commit();
+        }
+    }
+
+    /**
+     * @param requestContext có thể null (operation chạy ngoài request)
+     */
+    public static OperationEvent beginOperation(String operation, RequestContext requestContext) {
+        if (!OPERATION.isEnabled()) {
+            return null;
+        }
+        OperationEvent event = new OperationEvent();
+        event.begin();
+        event.operation = operation;
+        if (requestContext != null) {
+            event.requestId = requestContext.getRequestId();
+            event.traceId = requestContext.getTraceId();
+        }
+        return event;
+    }
+
+    public static void commitOperation(OperationEvent event, String outcome, long elements) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.elements = elements;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ghi event lỗi (instant event), thời gian xử lý request tới lúc lỗi nằm ở field processingTime
+     */
+    public static void errorHandled(RequestContext requestContext, String method, String route, int status,
+                                    Throwable error, long processingTimeNanos) {
+        if (!ERROR_HANDLED.isEnabled()) {
+            return;
+        }
+        ErrorHandledEvent event = new ErrorHandledEvent();
+        if (event.shouldCommit()) {
+            if (requestContext != null) {
+                event.requestId = requestContext.getRequestId();
+                event.traceId = requestContext.getTraceId();
+            }
+            event.method = method;
+            event.route = route;
+            event.status = status;
+            event.exceptionClass = error.getClass().getName();
+            event.message = error.getMessage();
+            event.processingTime = processingTimeNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Transformer ghi {@link QueueEvent} cho việc publish / consume một message
+     *
+     * @param direction {@link #PUBLISH} hoặc {@link #CONSUME}
+     */
+    public static <T> Function<Mono<T>, Mono<T>> queue(String direction, String queue) {
+        return mono -> Mono.deferContextual(ctx -> {
+            if (!QUEUE.isEnabled()) {
+                return mono;
+            }
+            QueueEvent event = new QueueEvent();
+            event.begin();
+            event.direction = direction;
+            event.queue = queue;
+            RequestContext requestContext = RequestContext.fromContext(ctx);
+            if (requestContext != null) {
+                event.requestId = requestContext.getRequestId();
+                event.traceId = requestContext.getTraceId();
+            }
+            return mono.doFinally(signalType -> {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.outcome = signalType.toString();
+                    event.commit();
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package vn.com.leaselink.commons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Một reactive operation đo bởi ReactiveMetricsRecorder (recordOperation / recordFluxOperation)
+ */
+@Name("vn.com.leaselink.ReactiveOperation")
+@Label("Reactive Operation")
+@Category({"LeaseLink", "Operation"})
+@Description("Thời gian từ lúc subscribe tới khi operation kết thúc")
+@StackTrace(false)
+public class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Elements")
+    long elements;
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Trace Id")
+    String traceId;
+}
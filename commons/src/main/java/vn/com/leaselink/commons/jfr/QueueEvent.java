@@ -0,0 +1,35 @@
+package vn.com.leaselink.commons.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Publish hoặc consume một message của queue
+ */
+@Name("vn.com.leaselink.Queue")
+@Label("Queue Message")
+@Category({"LeaseLink", "Queue"})
+@Description("Thời gian publish / xử lý một message")
+@StackTrace(false)
+public class QueueEvent extends Event {
+
+    @Label("Direction")
+    @Description("publish hoặc consume")
+    String direction;
+
+    @Label("Queue")
+    String queue;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Trace Id")
+    String traceId;
+}
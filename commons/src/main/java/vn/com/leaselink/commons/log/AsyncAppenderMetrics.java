@@ -0,0 +1,68 @@
+package vn.com.leaselink.commons.log;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đưa số liệu của các {@link RingBufferAsyncAppender} trong LoggerContext lên MeterRegistry:
+ * <ul>
+ *     <li>{@code logging.appender.dropped}: số event bị bỏ khi buffer đầy</li>
+ *     <li>{@code logging.appender.queue.depth} / {@code logging.appender.queue.capacity}</li>
+ *     <li>{@code logging.appender.flush}: thời gian ghi một batch xuống appender đích</li>
+ * </ul>
+ */
+public class AsyncAppenderMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (!(loggerFactory instanceof LoggerContext context)) {
+            return;
+        }
+        Map<RingBufferAsyncAppender, Boolean> appenders = new IdentityHashMap<>();
+        for (Logger logger : context.getLoggerList()) {
+            Iterator<Appender<ILoggingEvent>> iterator = logger.iteratorForAppenders();
+            while (iterator.hasNext()) {
+                if (iterator.next() instanceof RingBufferAsyncAppender appender) {
+                    appenders.put(appender, Boolean.TRUE);
+                }
+            }
+        }
+        for (RingBufferAsyncAppender appender : appenders.keySet()) {
+            bind(registry, appender);
+        }
+    }
+
+    private static void bind(MeterRegistry registry, RingBufferAsyncAppender appender) {
+        String name = appender.getName();
+        FunctionCounter.builder("logging.appender.dropped", appender, RingBufferAsyncAppender::getDroppedCount)
+                .tag("appender", name)
+                .description("Số log event bị bỏ do ring buffer đầy")
+                .register(registry);
+        Gauge.builder("logging.appender.queue.depth", appender, RingBufferAsyncAppender::getQueueDepth)
+                .tag("appender", name)
+                .register(registry);
+        Gauge.builder("logging.appender.queue.capacity", appender, RingBufferAsyncAppender::getBufferSize)
+                .tag("appender", name)
+                .register(registry);
+        Timer flush = Timer.builder("logging.appender.flush")
+                .tag("appender", name)
+                .description("Thời gian ghi một batch xuống appender đích")
+                .register(registry);
+        appender.setBatchLatencyRecorder(nanos -> flush.record(nanos, TimeUnit.NANOSECONDS));
+    }
+}
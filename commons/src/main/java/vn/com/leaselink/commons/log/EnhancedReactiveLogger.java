@@ -6,11 +6,10 @@ import org.slf4j.MDC;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Signal;
-import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+import vn.com.leaselink.commons.trace.MdcThreadLocalAccessor;
+import vn.com.leaselink.commons.trace.RequestContext;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -19,13 +18,6 @@ import java.util.function.Function;
  */
 public class EnhancedReactiveLogger {
 
-    private static final String REQUEST_ID = "requestId";
-    private static final String TRACE_ID = "traceId";
-    private static final String SPAN_ID = "spanId";
-    private static final String USER_ID = "userId";
-    private static final String TENANT_ID = "tenantId";
-    private static final String OPERATION = "operation";
-
     public static Logger getLogger(Class<?> clazz) {
         return LoggerFactory.getLogger(clazz);
     }
@@ -35,55 +27,29 @@ public class EnhancedReactiveLogger {
      */
     public static <T> Function<Flux<T>, Flux<T>> logOperationFlux(
             Logger logger, String operationName, String... params) {
-        return flux -> {
-            Map<String, String> contextMap = new HashMap<>();
-            contextMap.put(OPERATION, operationName);
-
-            return Flux.deferContextual(ctx -> {
-                        Map<String, String> fullContext = mergeMaps(
-                                extractContextMap(ctx),
-                                contextMap
-                        );
-
-                        withMDC(fullContext, () ->
-                                logger.info("STREAM START: {}{}",
-                                        operationName, formatParams(params)));
-
-                        return flux;
-                    })
-                    .doOnComplete(() -> Flux.deferContextual(ctx -> {
-                        Map<String, String> fullContext = mergeMaps(
-                                extractContextMap(ctx),
-                                contextMap
-                        );
-
-                        withMDC(fullContext, () ->
-                                logger.info("STREAM COMPLETE: {}{}",
-                                        operationName, formatParams(params)));
-                        return Flux.empty();
-                    }).subscribe())
-                    .doOnError(error -> Flux.deferContextual(ctx -> {
-                        Map<String, String> fullContext = mergeMaps(
-                                extractContextMap(ctx),
-                                contextMap
-                        );
-
-                        withMDC(fullContext, () ->
+        return flux -> Flux.deferContextual(ctx -> {
+                    // Request không được sample: bỏ qua START/COMPLETE, vẫn log lỗi
+                    if (!RequestContext.shouldLog(ctx)) {
+                        return flux.doOnError(error -> withMdc(ctx, () ->
                                 logger.error("STREAM ERROR: {} - Error: {}{}",
-                                        operationName, error.getMessage(), formatParams(params), error));
-                        return Flux.empty();
-                    }).subscribe())
-                    .contextWrite(context -> addToContext(context, contextMap));
-        };
-    }
+                                        operationName, error.getMessage(), formatParams(params), error)));
+                    }
 
-    private static Context addToContext(Context context, Map<String, String> map) {
-        Context result = context;
-        for (Map.Entry<String, String> entry : map.entrySet()) {
-            result = result.put(entry.getKey(), entry.getValue());
-        }
-        return result;
+                    withMdc(ctx, () ->
+                            logger.info("STREAM START: {}{}",
+                                    operationName, formatParams(params)));
+
+                    return flux
+                            .doOnComplete(() -> withMdc(ctx, () ->
+                                    logger.info("STREAM COMPLETE: {}{}",
+                                            operationName, formatParams(params))))
+                            .doOnError(error -> withMdc(ctx, () ->
+                                    logger.error("STREAM ERROR: {} - Error: {}{}",
+                                            operationName, error.getMessage(), formatParams(params), error)));
+                })
+                .contextWrite(context -> context.put(MdcThreadLocalAccessor.get().getOperationKey(), operationName));
     }
+
     /**
      * Log mỗi item trong Flux stream
      */
@@ -101,27 +67,17 @@ public class EnhancedReactiveLogger {
             Logger logger, String format, Function<T, Object[]> argSupplier) {
         return signal -> {
             if (signal.isOnNext()) {
-                Optional<Context> contextOptional = signal.getContextView().getOrEmpty(REQUEST_ID)
-                        .map(correlationId -> (Context) signal.getContextView());
-
-                if (contextOptional.isPresent()) {
-                    reactor.util.context.ContextView contextView = signal.getContextView();
-                    Map<String, String> contextMap = extractContextMap(contextView);
-
-                    withMDC(contextMap, () -> {
-                        try {
-                            logger.info(format, argSupplier.apply(signal.get()));
-                        } catch (Exception e) {
-                            logger.error("Error logging: {}", e.getMessage(), e);
-                        }
-                    });
-                } else {
+                // Request không được sample: không format, không đụng tới MDC
+                if (!RequestContext.shouldLog(signal.getContextView())) {
+                    return;
+                }
+                withMdc(signal.getContextView(), () -> {
                     try {
                         logger.info(format, argSupplier.apply(signal.get()));
                     } catch (Exception e) {
                         logger.error("Error logging: {}", e.getMessage(), e);
                     }
-                }
+                });
             }
         };
     }
@@ -132,53 +88,13 @@ public class EnhancedReactiveLogger {
     public static <T> Consumer<Signal<T>> logOnError(Logger logger, String format) {
         return signal -> {
             if (signal.isOnError()) {
-                Optional<Context> contextOptional = signal.getContextView().getOrEmpty(REQUEST_ID)
-                        .map(correlationId -> (Context) signal.getContextView());
-
-                if (contextOptional.isPresent()) {
-                    reactor.util.context.ContextView contextView = signal.getContextView();
-                    Map<String, String> contextMap = extractContextMap(contextView);
-
-                    withMDC(contextMap, () -> {
-                        logger.error(format, signal.getThrowable().getMessage(), signal.getThrowable());
-                    });
-                } else {
-                    logger.error(format, signal.getThrowable().getMessage(), signal.getThrowable());
-                }
+                withMdc(signal.getContextView(), () ->
+                        logger.error(format, signal.getThrowable().getMessage(), signal.getThrowable()));
             }
         };
     }
 
 
-    private static Map<String, String> extractContextMap(reactor.util.context.ContextView contextView) {
-        Map<String, String> contextMap = new HashMap<>();
-
-        addToMapIfPresent(contextMap, contextView, REQUEST_ID);
-        addToMapIfPresent(contextMap, contextView, TRACE_ID);
-        addToMapIfPresent(contextMap, contextView, SPAN_ID);
-        addToMapIfPresent(contextMap, contextView, USER_ID);
-        addToMapIfPresent(contextMap, contextView, TENANT_ID);
-        addToMapIfPresent(contextMap, contextView, OPERATION);
-
-        return contextMap;
-    }
-
-
-    private static void addToMapIfPresent(Map<String, String> map, reactor.util.context.ContextView ctx, String key) {
-        ctx.getOrEmpty(key).ifPresent(value -> {
-            if (value instanceof String) {
-                map.put(key, (String) value);
-            }
-        });
-    }
-
-
-    private static Map<String, String> mergeMaps(Map<String, String> map1, Map<String, String> map2) {
-        Map<String, String> result = new HashMap<>(map1);
-        result.putAll(map2);
-        return result;
-    }
-
     private static String formatParams(String[] params) {
         if(params == null || params.length == 0) {
             return "";
@@ -194,27 +110,29 @@ public class EnhancedReactiveLogger {
         return sb.toString();
     }
 
-    private static void withMDC(Map<String, String> contextMap, Runnable runnable) {
-        Map<String, String> previousContext = MDC.getCopyOfContextMap();
+    /**
+     * Đặt MDC từ RequestContext và operation trong Context, chỉ khôi phục đúng các key đã thay đổi
+     */
+    private static void withMdc(ContextView contextView, Runnable runnable) {
+        MdcThreadLocalAccessor accessor = MdcThreadLocalAccessor.get();
+        String operationKey = accessor.getOperationKey();
+        String operation = contextView.getOrDefault(operationKey, null);
+        String previousOperation = operation != null ? MDC.get(operationKey) : null;
+        boolean swapOperation = operation != null && !operation.equals(previousOperation);
+        if (swapOperation) {
+            MDC.put(operationKey, operation);
+        }
         try {
-            if(contextMap != null) {
-                for(Map.Entry<String, String> entry : contextMap.entrySet()) {
-                    MDC.put(entry.getKey(), entry.getValue());
-                }
-            }
-            runnable.run();
+            accessor.runWith(RequestContext.fromContext(contextView), runnable);
         } finally {
-            MDC.clear();
-            if(previousContext != null) {
-                assert contextMap != null;
-                for(Map.Entry<String, String> entry : contextMap.entrySet()) {
-                    MDC.put(entry.getKey(), entry.getValue());
+            if (swapOperation) {
+                if (previousOperation != null) {
+                    MDC.put(operationKey, previousOperation);
+                } else {
+                    MDC.remove(operationKey);
                 }
             }
         }
-
-
     }
 
-
 }
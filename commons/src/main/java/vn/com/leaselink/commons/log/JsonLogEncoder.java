@@ -0,0 +1,412 @@
+package vn.com.leaselink.commons.log;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encoder JSON cho ELK, thay cho PatternLayout với JSON_PATTERN.
+ * <p>
+ * Mỗi event được ghi thẳng thành UTF-8 vào một buffer byte tái sử dụng theo thread: message và stack trace
+ * được escape đúng chuẩn JSON, phần timestamp được cache theo giây, các field cố định (app_name, environment,
+ * host_name) được encode sẵn khi start. Bản copy duy nhất là mảng byte trả về theo hợp đồng của {@code Encoder}.
+ * <p>
+ * Các field giữ nguyên tên và giá trị mặc định như JSON_PATTERN cũ.
+ */
+public class JsonLogEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Field JSON, key MDC và giá trị mặc định khi MDC không có key
+     */
+    private static final String[][] MDC_FIELDS = {
+            {"trace_id", "traceId", "NO_TRACE"},
+            {"span_id", "spanId", "NO_SPAN"},
+            {"request_id", "requestId", "NO_REQ"},
+            {"user_id", "userId", ""},
+            {"tenant_id", "tenantId", ""},
+            {"operation", "operation", ""},
+    };
+
+    private static final byte[] FIELD_LEVEL = ascii("\",\"level\":\"");
+    private static final byte[] FIELD_THREAD = ascii("\",\"thread\":\"");
+    private static final byte[] FIELD_LOGGER = ascii("\",\"logger\":\"");
+    private static final byte[] FIELD_MESSAGE = ascii("\",\"message\":\"");
+    private static final byte[] FIELD_EXCEPTION = ascii(",\"exception\":\"");
+
+    private String appName = "unknown_app";
+    private String environment = "development";
+    private String hostName = "unknown";
+    private ZoneId zoneId = ZoneId.systemDefault();
+    private int initialBufferSize = 1024;
+    private int maxRetainedBufferSize = 64 * 1024;
+
+    private byte[] staticFields;
+    private byte[][] mdcFieldPrefixes;
+    private byte[][] mdcDefaults;
+
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(() -> new State(initialBufferSize));
+
+    public void setAppName(String appName) {
+        this.appName = appName;
+    }
+
+    public void setEnvironment(String environment) {
+        this.environment = environment;
+    }
+
+    public void setHostName(String hostName) {
+        this.hostName = hostName;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.zoneId = ZoneId.of(timeZone);
+    }
+
+    public void setInitialBufferSize(int initialBufferSize) {
+        this.initialBufferSize = initialBufferSize;
+    }
+
+    public void setMaxRetainedBufferSize(int maxRetainedBufferSize) {
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    @Override
+    public void start() {
+        State scratch = new State(256);
+        scratch.writeAscii("\",\"app_name\":\"");
+        scratch.writeEscaped(appName);
+        scratch.writeAscii("\",\"environment\":\"");
+        scratch.writeEscaped(environment);
+        scratch.writeAscii("\",\"host_name\":\"");
+        scratch.writeEscaped(hostName);
+        scratch.writeAscii("\"");
+        staticFields = scratch.toByteArray();
+
+        mdcFieldPrefixes = new byte[MDC_FIELDS.length][];
+        mdcDefaults = new byte[MDC_FIELDS.length][];
+        for (int i = 0; i < MDC_FIELDS.length; i++) {
+            mdcFieldPrefixes[i] = ascii(",\"" + MDC_FIELDS[i][0] + "\":\"");
+            mdcDefaults[i] = MDC_FIELDS[i][2].getBytes(StandardCharsets.UTF_8);
+        }
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        State out = state.get();
+        out.reset();
+
+        out.write((byte) '{');
+        out.writeAscii("\"@timestamp\":\"");
+        out.writeTimestamp(event.getTimeStamp(), zoneId);
+        out.write(FIELD_LEVEL);
+        out.writeAscii(event.getLevel().levelStr);
+        out.write(FIELD_THREAD);
+        out.writeEscaped(event.getThreadName());
+        out.write(FIELD_LOGGER);
+        out.writeEscaped(event.getLoggerName());
+        out.write(FIELD_MESSAGE);
+        out.writeEscaped(event.getFormattedMessage());
+        out.write(staticFields);
+
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        for (int i = 0; i < MDC_FIELDS.length; i++) {
+            out.write(mdcFieldPrefixes[i]);
+            String value = mdc != null ? mdc.get(MDC_FIELDS[i][1]) : null;
+            if (value != null) {
+                out.writeEscaped(value);
+            } else {
+                out.write(mdcDefaults[i]);
+            }
+            out.write((byte) '"');
+        }
+
+        out.write(FIELD_EXCEPTION);
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            out.writeThrowable(throwable);
+        }
+        out.write((byte) '"');
+        out.write((byte) '}');
+        out.writeAscii(CoreConstants.LINE_SEPARATOR);
+
+        byte[] encoded = out.toByteArray();
+        out.trim(maxRetainedBufferSize, initialBufferSize);
+        return encoded;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Buffer byte và cache timestamp của một thread
+     */
+    static final class State {
+
+        private byte[] buffer;
+        private int length;
+
+        private long cachedSecond = Long.MIN_VALUE;
+        private final byte[] cachedTimestamp = new byte[19];
+        private final byte[] cachedOffset = new byte[5];
+
+        State(int initialSize) {
+            this.buffer = new byte[initialSize];
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        /**
+         * Không giữ lại buffer quá lớn sau một event có stack trace dài
+         */
+        void trim(int maxRetained, int initialSize) {
+            if (buffer.length > maxRetained) {
+                buffer = new byte[initialSize];
+            }
+        }
+
+        void write(byte b) {
+            ensureCapacity(1);
+            buffer[length++] = b;
+        }
+
+        void write(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void writeAscii(String value) {
+            int n = value.length();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                buffer[length++] = (byte) value.charAt(i);
+            }
+        }
+
+        void writeInt(int value) {
+            if (value < 0) {
+                write((byte) '-');
+                value = -value;
+            }
+            int digits = 1;
+            for (int v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            ensureCapacity(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+        }
+
+        /**
+         * Escape JSON và encode UTF-8 trực tiếp từ chuỗi, không tạo String/char[] trung gian
+         */
+        void writeEscaped(String value) {
+            if (value == null) {
+                return;
+            }
+            int n = value.length();
+            ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    if (length == buffer.length) {
+                        ensureCapacity(n - i);
+                    }
+                    buffer[length++] = (byte) c;
+                } else if (c < 0x80) {
+                    writeEscapedAscii(c);
+                } else if (c < 0x800) {
+                    ensureCapacity(2);
+                    buffer[length++] = (byte) (0xC0 | (c >> 6));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    ensureCapacity(4);
+                    buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    write((byte) '?');
+                } else {
+                    ensureCapacity(3);
+                    buffer[length++] = (byte) (0xE0 | (c >> 12));
+                    buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void writeEscapedAscii(char c) {
+            ensureCapacity(6);
+            buffer[length++] = '\\';
+            switch (c) {
+                case '"' -> buffer[length++] = '"';
+                case '\\' -> buffer[length++] = '\\';
+                case '\n' -> buffer[length++] = 'n';
+                case '\r' -> buffer[length++] = 'r';
+                case '\t' -> buffer[length++] = 't';
+                case '\b' -> buffer[length++] = 'b';
+                case '\f' -> buffer[length++] = 'f';
+                default -> {
+                    buffer[length++] = 'u';
+                    buffer[length++] = '0';
+                    buffer[length++] = '0';
+                    buffer[length++] = HEX[c >> 4];
+                    buffer[length++] = HEX[c & 0xF];
+                }
+            }
+        }
+
+        /**
+         * yyyy-MM-dd'T'HH:mm:ss.SSSZ, phần tới giây được tính lại tối đa một lần mỗi giây
+         */
+        void writeTimestamp(long epochMillis, ZoneId zoneId) {
+            long second = Math.floorDiv(epochMillis, 1000);
+            if (second != cachedSecond) {
+                ZoneOffset offset = zoneId.getRules().getOffset(Instant.ofEpochSecond(second));
+                LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, offset);
+                writeDigits(cachedTimestamp, 0, time.getYear(), 4);
+                cachedTimestamp[4] = '-';
+                writeDigits(cachedTimestamp, 5, time.getMonthValue(), 2);
+                cachedTimestamp[7] = '-';
+                writeDigits(cachedTimestamp, 8, time.getDayOfMonth(), 2);
+                cachedTimestamp[10] = 'T';
+                writeDigits(cachedTimestamp, 11, time.getHour(), 2);
+                cachedTimestamp[13] = ':';
+                writeDigits(cachedTimestamp, 14, time.getMinute(), 2);
+                cachedTimestamp[16] = ':';
+                writeDigits(cachedTimestamp, 17, time.getSecond(), 2);
+
+                int offsetMinutes = offset.getTotalSeconds() / 60;
+                cachedOffset[0] = (byte) (offsetMinutes < 0 ? '-' : '+');
+                offsetMinutes = Math.abs(offsetMinutes);
+                writeDigits(cachedOffset, 1, offsetMinutes / 60, 2);
+                writeDigits(cachedOffset, 3, offsetMinutes % 60, 2);
+                cachedSecond = second;
+            }
+            write(cachedTimestamp);
+            ensureCapacity(4);
+            buffer[length++] = '.';
+            writeDigits(buffer, length, (int) Math.floorMod(epochMillis, 1000), 3);
+            length += 3;
+            write(cachedOffset);
+        }
+
+        /**
+         * Stack trace cùng định dạng với %exception, escape trực tiếp vào buffer
+         */
+        void writeThrowable(IThrowableProxy throwable) {
+            writeThrowable(throwable, null, 0);
+        }
+
+        private void writeThrowable(IThrowableProxy throwable, String prefix, int depth) {
+            for (int d = 0; d < depth; d++) {
+                writeAscii("\\t");
+            }
+            if (prefix != null) {
+                writeAscii(prefix);
+            }
+            writeEscaped(throwable.getClassName());
+            if (throwable.getMessage() != null) {
+                writeAscii(": ");
+                writeEscaped(throwable.getMessage());
+            }
+            writeAscii("\\n");
+
+            StackTraceElementProxy[] frames = throwable.getStackTraceElementProxyArray();
+            int commonFrames = throwable.getCommonFrames();
+            for (int i = 0; i < frames.length - commonFrames; i++) {
+                for (int d = 0; d < depth; d++) {
+                    writeAscii("\\t");
+                }
+                writeAscii("\\tat ");
+                writeFrame(frames[i].getStackTraceElement());
+                writeAscii("\\n");
+            }
+            if (commonFrames > 0) {
+                for (int d = 0; d < depth; d++) {
+                    writeAscii("\\t");
+                }
+                writeAscii("\\t... ");
+                writeInt(commonFrames);
+                writeAscii(" common frames omitted\\n");
+            }
+
+            IThrowableProxy[] suppressed = throwable.getSuppressed();
+            if (suppressed != null) {
+                for (IThrowableProxy s : suppressed) {
+                    writeThrowable(s, CoreConstants.SUPPRESSED, depth + 1);
+                }
+            }
+            if (throwable.getCause() != null) {
+                writeThrowable(throwable.getCause(), CoreConstants.CAUSED_BY, depth);
+            }
+        }
+
+        private void writeFrame(StackTraceElement frame) {
+            writeEscaped(frame.getClassName());
+            write((byte) '.');
+            writeEscaped(frame.getMethodName());
+            write((byte) '(');
+            if (frame.isNativeMethod()) {
+                writeAscii("Native Method");
+            } else if (frame.getFileName() == null) {
+                writeAscii("Unknown Source");
+            } else {
+                writeEscaped(frame.getFileName());
+                if (frame.getLineNumber() >= 0) {
+                    write((byte) ':');
+                    writeInt(frame.getLineNumber());
+                }
+            }
+            write((byte) ')');
+        }
+
+        private static void writeDigits(byte[] target, int offset, int value, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                target[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, length + extra));
+            }
+        }
+    }
+}
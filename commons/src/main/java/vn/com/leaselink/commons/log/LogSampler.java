@@ -0,0 +1,79 @@
+package vn.com.leaselink.commons.log;
+
+/**
+ * Quyết định có log một request hay không dựa trên {@link LoggingProperties#getSampleRate()}.
+ * <p>
+ * Quyết định được hash từ trace ID nên mọi service dùng cùng sample rate sẽ cùng giữ
+ * hoặc cùng bỏ một trace. Với trace ID dạng hex (B3/W3C) lấy 64 bit thấp, các dạng khác
+ * dùng FNV-1a 64-bit; kết quả được trộn qua fmix64 vì ID fallback (TSID) có bit cao theo thời gian.
+ */
+public class LogSampler {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final double sampleRate;
+    private final long threshold;
+
+    public LogSampler(double sampleRate) {
+        if (Double.isNaN(sampleRate) || sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new IllegalArgumentException("logging.reactive.sample-rate must be between 0.0 and 1.0: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.threshold = (long) (sampleRate * Long.MAX_VALUE);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return true nếu request thuộc trace này cần được log
+     */
+    public boolean isSampled(String traceId) {
+        if (sampleRate >= 1.0) {
+            return true;
+        }
+        if (sampleRate <= 0.0 || traceId == null) {
+            return false;
+        }
+        return (mix(hash(traceId)) >>> 1) < threshold;
+    }
+
+    static long hash(String traceId) {
+        int length = traceId.length();
+        if (length >= 16) {
+            long value = 0;
+            for (int i = length - 16; i < length; i++) {
+                int digit = Character.digit(traceId.charAt(i), 16);
+                if (digit < 0) {
+                    return fnv1a(traceId);
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+        return fnv1a(traceId);
+    }
+
+    /**
+     * Finalizer fmix64 của MurmurHash3
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -1,11 +1,14 @@
 package vn.com.leaselink.commons.log;
 
 import brave.Tracer;
+import brave.Tracing;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.observation.ObservationRegistry;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -18,11 +21,29 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
 import reactor.core.publisher.Hooks;
+import vn.com.leaselink.commons.adapter.AsyncLogSink;
 import vn.com.leaselink.commons.exception.GlobalErrorHandler;
 import vn.com.leaselink.commons.filter.ReactiveLoggingFilter;
+import vn.com.leaselink.commons.metrics.CardinalityLimitingMeterFilter;
+import vn.com.leaselink.commons.metrics.ExemplarStore;
+import vn.com.leaselink.commons.metrics.ExemplarsEndpoint;
+import vn.com.leaselink.commons.metrics.LatencyDistributionMeterFilter;
+import vn.com.leaselink.commons.metrics.LatencyHistograms;
+import vn.com.leaselink.commons.metrics.LatencyHistogramsEndpoint;
+import vn.com.leaselink.commons.metrics.PoolTelemetryRegistry;
 import vn.com.leaselink.commons.metrics.ReactiveMetricsRecorder;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+import vn.com.leaselink.commons.metrics.SlowRequestDetector;
+import vn.com.leaselink.commons.trace.HttpRequestSampler;
+import vn.com.leaselink.commons.trace.HttpServerTracing;
+import vn.com.leaselink.commons.trace.IdGenerator;
+import vn.com.leaselink.commons.trace.RequestContextSpanContext;
+import vn.com.leaselink.commons.trace.TsidIdGenerator;
 
-@AutoConfiguration
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@AutoConfiguration(beforeName = "org.springframework.boot.actuate.autoconfigure.tracing.prometheus.PrometheusSimpleclientExemplarsAutoConfiguration")
 @EnableConfigurationProperties(LoggingProperties.class)
 @ConditionalOnClass(name = {"reactor.core.publisher.Flux", "org.springframework.web.reactive.DispatcherHandler"})
 @Import({ReactorHooksConfiguration.class})
@@ -38,26 +59,176 @@ public class LoggingAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public ReactiveLoggingFilter reactiveLoggingFilter(Tracer tracer) {
+    public IdGenerator idGenerator() {
+        return TsidIdGenerator.forNode(properties.getNodeId());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LogSampler logSampler() {
+        return new LogSampler(properties.getSampleRate());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SensitiveDataMasker sensitiveDataMasker() {
+        return new SensitiveDataMasker(properties.getSensitiveFields());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RouteNormalizer routeNormalizer() {
+        return new RouteNormalizer();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SlowRequestDetector slowRequestDetector(RouteNormalizer routeNormalizer) {
+        return new SlowRequestDetector(properties.getMetrics(), routeNormalizer);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HttpServerTracing httpServerTracing(Tracing tracing, ObjectProvider<HttpRequestSampler> httpRequestSampler) {
+        return new HttpServerTracing(tracing, httpRequestSampler.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactiveLoggingFilter reactiveLoggingFilter(HttpServerTracing httpServerTracing, IdGenerator idGenerator,
+                                                       LogSampler logSampler,
+                                                       SensitiveDataMasker sensitiveDataMasker,
+                                                       SlowRequestDetector slowRequestDetector,
+                                                       RouteNormalizer routeNormalizer,
+                                                       ExemplarStore exemplarStore,
+                                                       LatencyHistograms latencyHistograms) {
         log.info("Initializing Reactive Logging Filter");
-        return new ReactiveLoggingFilter(tracer);
+        return new ReactiveLoggingFilter(httpServerTracing, idGenerator, logSampler, properties, sensitiveDataMasker,
+                slowRequestDetector, routeNormalizer, exemplarStore, latencyHistograms);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ExemplarStore exemplarStore() {
+        LoggingProperties.MetricsLog metrics = properties.getMetrics();
+        return new ExemplarStore(metrics.getExemplarTopN(),
+                TimeUnit.SECONDS.toMillis(metrics.getExemplarWindowSeconds()), metrics.getExemplarMaxRoutes(),
+                LatencyDistributionMeterFilter.sloBoundaries(metrics, "http.server.requests"));
     }
 
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnBean(MeterRegistry.class)
     public ReactiveMetricsRecorder reactiveMetricsRecorder(MeterRegistry meterRegistry,
-                                                           ObservationRegistry observationRegistry) {
+                                                           ObservationRegistry observationRegistry,
+                                                           RouteNormalizer routeNormalizer,
+                                                           LatencyHistograms latencyHistograms,
+                                                           PoolTelemetryRegistry poolTelemetryRegistry) {
         log.info("Initializing Reactive Metrics Recorder");
-        return new ReactiveMetricsRecorder(meterRegistry, observationRegistry);
+        return new ReactiveMetricsRecorder(meterRegistry, observationRegistry, routeNormalizer, latencyHistograms,
+                poolTelemetryRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(MeterRegistry.class)
+    public PoolTelemetryRegistry poolTelemetryRegistry(MeterRegistry meterRegistry) {
+        return new PoolTelemetryRegistry(meterRegistry,
+                Duration.ofMillis(properties.getMetrics().getPoolAcquireWarnThresholdMs()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LatencyHistograms latencyHistograms() {
+        return new LatencyHistograms(properties.getMetrics().getLatencyHistogramMaxSeries());
+    }
+
+    /**
+     * MeterFilter chặn tag có cardinality cao, được Spring Boot áp dụng cho mọi MeterRegistry
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(MeterRegistry.class)
+    public CardinalityLimitingMeterFilter cardinalityLimitingMeterFilter() {
+        return new CardinalityLimitingMeterFilter(properties.getMetrics());
+    }
+
+    /**
+     * Percentile, histogram và SLO bucket cho các timer latency
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(MeterRegistry.class)
+    public LatencyDistributionMeterFilter latencyDistributionMeterFilter() {
+        return new LatencyDistributionMeterFilter(properties.getMetrics());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(name = "ch.qos.logback.classic.LoggerContext")
+    public AsyncAppenderMetrics asyncAppenderMetrics() {
+        return new AsyncAppenderMetrics();
+    }
+
+    /**
+     * Sink dùng chung cho AsyncLogger, đăng ký làm sink mặc định và được flush khi context đóng
+     */
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnMissingBean
+    public AsyncLogSink asyncLogSink() {
+        LoggingProperties.AsyncLog async = properties.getAsync();
+        return AsyncLogSink.install(new AsyncLogSink(
+                async.getBufferSize(),
+                async.getMaxBatchSize(),
+                Duration.ofMillis(async.getFlushIntervalMs()),
+                async.getOverflowPolicy(),
+                Duration.ofMillis(async.getBlockTimeoutMs())));
     }
 
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
-    public GlobalErrorHandler globalErrorHandler(Tracer tracer, MeterRegistry meterRegistry) {
+    public GlobalErrorHandler globalErrorHandler(Tracer tracer, MeterRegistry meterRegistry,
+                                                 RouteNormalizer routeNormalizer) {
         log.info("Initializing Global Error Handler");
-        return new GlobalErrorHandler(tracer, meterRegistry);
+        return new GlobalErrorHandler(tracer, meterRegistry, routeNormalizer);
+    }
+
+    /**
+     * Endpoint {@code /actuator/exemplars} liệt kê request chậm nhất theo route kèm traceId,
+     * {@code /actuator/latencyhistograms} dump HdrHistogram theo route/operation
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class ExemplarEndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnAvailableEndpoint
+        public ExemplarsEndpoint exemplarsEndpoint(ExemplarStore exemplarStore) {
+            return new ExemplarsEndpoint(exemplarStore);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnAvailableEndpoint
+        public LatencyHistogramsEndpoint latencyHistogramsEndpoint(LatencyHistograms latencyHistograms) {
+            return new LatencyHistogramsEndpoint(latencyHistograms);
+        }
+    }
+
+    /**
+     * Exemplar trên histogram khi Prometheus scrape: traceId lấy từ span Brave hoặc RequestContext hiện tại
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.prometheus.client.exemplars.tracer.common.SpanContextSupplier")
+    static class PrometheusExemplarConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(type = "io.prometheus.client.exemplars.tracer.common.SpanContextSupplier")
+        public RequestContextSpanContext requestContextSpanContext(ObjectProvider<Tracer> tracer) {
+            return new RequestContextSpanContext(tracer.getIfAvailable());
+        }
     }
 
     /**
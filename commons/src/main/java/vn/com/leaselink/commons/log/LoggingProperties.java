@@ -3,9 +3,15 @@ package vn.com.leaselink.commons.log;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import vn.com.leaselink.commons.adapter.AsyncLogSink;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Getter
 @ConfigurationProperties(prefix = "logging.reactive")
@@ -46,7 +52,13 @@ public class LoggingProperties {
      */
     @Setter
     private List<String> sensitiveFields = new ArrayList<>(
-            List.of("password", "ssn", "creditCard", "secret", "token", "authorization"));
+            List.of("password", "ssn", "creditCard", "secret", "token", "authorization", "cookie"));
+
+    /**
+     * Node ID (0-1023) dùng để sinh TSID cho request/trace ID, -1 = tự suy ra từ hostname và pid
+     */
+    @Setter
+    private int nodeId = -1;
 
     /**
      * Log configuration cho mỗi loại log
@@ -55,6 +67,8 @@ public class LoggingProperties {
     private final ResponseLog response = new ResponseLog();
     private final ErrorLog error = new ErrorLog();
     private final MetricsLog metrics = new MetricsLog();
+    private final AsyncLog async = new AsyncLog();
+    private final ReactorLog reactor = new ReactorLog();
 
     /**
      * Configuration cho MDC keys
@@ -107,6 +121,114 @@ public class LoggingProperties {
         private boolean logSlowRequests = true;
         private long slowRequestThresholdMs = 1000;
 
+        /**
+         * Ngưỡng chậm thích ứng theo route: max(slowRequestFloorMs, pXX của cửa sổ trước × slowRequestFactor).
+         * Khi route chưa đủ mẫu thì dùng slowRequestThresholdMs.
+         */
+        private boolean adaptiveSlowRequests = true;
+        private double slowRequestPercentile = 0.99;
+        private double slowRequestFactor = 1.5;
+        private long slowRequestFloorMs = 100;
+        private long slowRequestWindowSeconds = 60;
+        private long slowRequestMinSamples = 200;
+
+        /**
+         * Số route tối đa được theo dõi riêng, các route vượt quá dùng chung một histogram
+         */
+        private int slowRequestMaxRoutes = 500;
+
+        /**
+         * Tag key không được phép xuất hiện trên metric (mỗi giá trị là một meter mới), bị bỏ khỏi meter id
+         */
+        private Set<String> forbiddenTagKeys = new LinkedHashSet<>(List.of("requestId", "traceId", "spanId", "userId"));
+
+        /**
+         * Số giá trị khác nhau tối đa của một tag key trên một meter, giá trị vượt quá được gộp vào {@code OTHER}
+         */
+        private int maxTagValues = 200;
+
+        /**
+         * Budget riêng theo tên meter, ghi đè maxTagValues (ví dụ http.server.requests: 500)
+         */
+        private Map<String, Integer> tagValueBudgets = new HashMap<>();
+
+        /**
+         * Các timer được publish percentile / histogram / SLO bucket
+         */
+        private Set<String> latencyMeters = new LinkedHashSet<>(
+                List.of("http.server.requests", "operation.duration", "database.transaction.duration"));
+        private List<Double> latencyPercentiles = new ArrayList<>(List.of(0.5, 0.9, 0.99, 0.999));
+        private boolean latencyPercentileHistogram = true;
+
+        /**
+         * SLO bucket theo tên operation (tag {@code operation}) hoặc tên meter, ví dụ
+         * {@code redis.get: 1ms,5ms,20ms}
+         */
+        private Map<String, List<Duration>> latencySlo = new HashMap<>();
+
+        /**
+         * Số series tối đa của LatencyHistograms (HdrHistogram theo route/operation)
+         */
+        private int latencyHistogramMaxSeries = 256;
+
+        /**
+         * Thời gian chờ lấy connection/channel từ pool vượt ngưỡng này sẽ bị log warning
+         */
+        private long poolAcquireWarnThresholdMs = 500;
+
+        /**
+         * Instrument Reactor Scheduler và event loop của reactor-netty (tắt mặc định vì bọc mọi task)
+         */
+        private boolean schedulerMetrics = false;
+
+        /**
+         * Exemplar theo route: số request chậm nhất giữ lại và thời gian sống của exemplar
+         */
+        private int exemplarTopN = 10;
+        private long exemplarWindowSeconds = 300;
+        private int exemplarMaxRoutes = 500;
+
+    }
+
+    /**
+     * Configuration cho Reactor debug agent và phát hiện chặn thread non-blocking
+     */
+    @Setter
+    @Getter
+    public static class ReactorLog {
+
+        /**
+         * ReactorDebugAgent tốn thời gian khởi động và overhead ở mọi operator, chỉ bật theo profile (dev/test)
+         */
+        private boolean debugAgent = false;
+
+        private boolean blockingDetection = true;
+
+        /**
+         * Task giữ thread non-blocking / event loop lâu hơn ngưỡng này bị coi là chặn
+         */
+        private long blockingThresholdMs = 100;
+        private long blockingCheckIntervalMs = 50;
+
+        /**
+         * Khoảng cách tối thiểu giữa hai lần log stack trace (counter vẫn đếm mọi lần phát hiện)
+         */
+        private long blockingStackSampleIntervalMs = 10000;
+
+    }
+
+    /**
+     * Configuration cho AsyncLogger (sink dùng chung, ghi theo batch)
+     */
+    @Setter
+    @Getter
+    public static class AsyncLog {
+        private int bufferSize = 8192;
+        private int maxBatchSize = 256;
+        private long flushIntervalMs = 200;
+        private AsyncLogSink.OverflowPolicy overflowPolicy = AsyncLogSink.OverflowPolicy.DROP;
+        private long blockTimeoutMs = 100;
+
     }
 
     /**
@@ -1,27 +1,108 @@
 package vn.com.leaselink.commons.log;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.netty.channel.EventLoopGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ReactorResourceFactory;
 import reactor.core.publisher.Hooks;
+import reactor.netty.resources.LoopResources;
 import reactor.tools.agent.ReactorDebugAgent;
 
+import java.time.Duration;
+import vn.com.leaselink.commons.metrics.BlockingDetector;
+import vn.com.leaselink.commons.metrics.ReactiveMetricsRecorder;
+import vn.com.leaselink.commons.metrics.ReactorSchedulerMetrics;
+import vn.com.leaselink.commons.trace.MdcThreadLocalAccessor;
+
 @Configuration
 @ConditionalOnClass(Hooks.class)
 public class ReactorHooksConfiguration {
     private static final Logger log = LoggerFactory.getLogger(ReactorHooksConfiguration.class);
 
+    /**
+     * Đăng ký MdcThreadLocalAccessor trước khi bật automatic propagation: Reactor tự đặt/khôi phục
+     * các key MDC của request khi signal chuyển thread, không cần copy MDC ở mỗi operator
+     */
     @Bean
-    public ReactorContextPropagationEnabler enableContextPropagation() {
+    public ReactorContextPropagationEnabler enableContextPropagation(LoggingProperties properties) {
         log.info("Enabling Reactor Context Propagation");
+        MdcThreadLocalAccessor.register(properties.getMdcKeys());
         Hooks.enableAutomaticContextPropagation();
         return new ReactorContextPropagationEnabler();
     }
 
+    /**
+     * Instrument Scheduler (queue, thời gian chờ/chạy task, thread active), chỉ khi bật
+     * {@code logging.reactive.metrics.scheduler-metrics}; pending task của event loop HTTP server được gắn
+     * trong {@link #serverEventLoopBinder}
+     */
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnProperty(prefix = "logging.reactive.metrics", name = "scheduler-metrics", havingValue = "true")
+    public ReactorSchedulerMetrics reactorSchedulerMetrics(MeterRegistry meterRegistry) {
+        return new ReactorSchedulerMetrics(meterRegistry).install();
+    }
+
+    /**
+     * Watchdog phát hiện task giữ thread non-blocking / event loop HTTP server quá ngưỡng, bật mặc định;
+     * không có MeterRegistry bean thì metrics được ghi vào {@link Metrics#globalRegistry}
+     */
+    @Bean(destroyMethod = "dispose")
+    @ConditionalOnProperty(prefix = "logging.reactive.reactor", name = "blocking-detection",
+            havingValue = "true", matchIfMissing = true)
+    public BlockingDetector blockingDetector(LoggingProperties properties,
+                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        LoggingProperties.ReactorLog reactor = properties.getReactor();
+        BlockingDetector detector = new BlockingDetector(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                Duration.ofMillis(reactor.getBlockingThresholdMs()),
+                Duration.ofMillis(reactor.getBlockingCheckIntervalMs()),
+                Duration.ofMillis(reactor.getBlockingStackSampleIntervalMs())).install();
+        return detector;
+    }
+
+    /**
+     * Sau khi Netty server khởi động, lấy event loop từ {@link ReactorResourceFactory} mà server đang chạy
+     * trên đó (HttpResources toàn cục hoặc loop riêng khi {@code useGlobalResources=false}) để BlockingDetector
+     * theo dõi và ghi pending task (khi bật scheduler-metrics). Bỏ qua server management trên port riêng vì
+     * dùng chung loop với server chính.
+     */
+    @Bean
+    @ConditionalOnClass(name = "org.springframework.boot.web.embedded.netty.NettyWebServer")
+    public ApplicationListener<ReactiveWebServerInitializedEvent> serverEventLoopBinder(
+            ObjectProvider<ReactorResourceFactory> resourceFactory,
+            ObjectProvider<BlockingDetector> blockingDetector,
+            ObjectProvider<ReactorSchedulerMetrics> schedulerMetrics,
+            ObjectProvider<ReactiveMetricsRecorder> metricsRecorder) {
+        return event -> {
+            ReactorResourceFactory factory = resourceFactory.getIfAvailable();
+            if (factory == null || !(event.getWebServer() instanceof NettyWebServer)
+                    || event.getApplicationContext().getServerNamespace() != null) {
+                return;
+            }
+            EventLoopGroup serverLoops = factory.getLoopResources().onServer(LoopResources.DEFAULT_NATIVE);
+            blockingDetector.ifAvailable(detector -> detector.watchEventLoops(serverLoops));
+            if (schedulerMetrics.getIfAvailable() != null) {
+                metricsRecorder.ifAvailable(recorder -> recorder.bindEventLoopMetrics("http-server", serverLoops));
+            }
+        };
+    }
+
+    /**
+     * ReactorDebugAgent chỉ bật khi {@code logging.reactive.reactor.debug-agent=true}, ví dụ trong
+     * application-dev.yml, không chạy ở production
+     */
     @Bean
     @ConditionalOnClass(ReactorDebugAgent.class)
+    @ConditionalOnProperty(prefix = "logging.reactive.reactor", name = "debug-agent", havingValue = "true")
     public ReactorDebugEnabler enableReactorDebug() {
         try {
             log.info("Enabling Reactor Debug Agent");
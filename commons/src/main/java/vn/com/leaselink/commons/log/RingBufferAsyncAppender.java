@@ -0,0 +1,351 @@
+package vn.com.leaselink.commons.log;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Async appender dựa trên ring buffer cấp phát sẵn, nhiều producer / một consumer, không dùng lock.
+ * <p>
+ * Producer chiếm slot bằng CAS trên tail (mỗi slot có sequence riêng), worker thread drain theo batch
+ * ({@link #setMaxBatchSize(int)}) rồi ghi xuống các appender được gắn vào. Khi buffer đầy:
+ * <ul>
+ *     <li>{@code neverBlock=true}: bỏ event và tăng bộ đếm dropped</li>
+ *     <li>{@code neverBlock=false}: chờ tối đa {@code maxBlockMillis} (0 = chờ tới khi có chỗ) rồi mới bỏ</li>
+ * </ul>
+ * Số event bị bỏ, độ sâu hàng đợi và thời gian ghi mỗi batch được đưa lên MeterRegistry qua
+ * {@link AsyncAppenderMetrics}.
+ *
+ * <pre>
+ * &lt;appender name="ASYNC_FILE" class="vn.com.leaselink.commons.log.RingBufferAsyncAppender"&gt;
+ *     &lt;bufferSize&gt;8192&lt;/bufferSize&gt;
+ *     &lt;waitStrategy&gt;SLEEPING&lt;/waitStrategy&gt;
+ *     &lt;appender-ref ref="FILE" /&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class RingBufferAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+        implements AppenderAttachable<ILoggingEvent> {
+
+    /**
+     * Cách worker chờ khi buffer rỗng
+     */
+    public enum WaitStrategy {
+        /** park tới khi producer đánh thức, ít CPU nhất */
+        BLOCKING,
+        /** spin ngắn rồi park 100µs, cân bằng giữa latency và CPU */
+        SLEEPING,
+        /** Thread.yield() */
+        YIELDING,
+        /** spin liên tục, latency thấp nhất, chiếm trọn một core */
+        BUSY_SPIN
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BLOCKING_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long PRODUCER_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+
+    private int bufferSize = 8192;
+    private int maxBatchSize = 256;
+    private boolean neverBlock = true;
+    private long maxBlockMillis = 0;
+    private long maxFlushTimeMillis = 1000;
+    private boolean includeCallerData = false;
+    private WaitStrategy waitStrategy = WaitStrategy.SLEEPING;
+
+    private ILoggingEvent[] slots;
+    private AtomicLongArray sequences;
+    private int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean consumerParked;
+    private volatile LongConsumer batchLatencyRecorder = nanos -> { };
+    private Thread worker;
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void setNeverBlock(boolean neverBlock) {
+        this.neverBlock = neverBlock;
+    }
+
+    public void setMaxBlockMillis(long maxBlockMillis) {
+        this.maxBlockMillis = maxBlockMillis;
+    }
+
+    public void setMaxFlushTimeMillis(long maxFlushTimeMillis) {
+        this.maxFlushTimeMillis = maxFlushTimeMillis;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Nhận callback thời gian ghi mỗi batch (nano giây), dùng bởi {@link AsyncAppenderMetrics}
+     */
+    public void setBatchLatencyRecorder(LongConsumer batchLatencyRecorder) {
+        this.batchLatencyRecorder = batchLatencyRecorder != null ? batchLatencyRecorder : nanos -> { };
+    }
+
+    public int getBufferSize() {
+        return mask + 1;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (bufferSize < 2) {
+            addError("Invalid bufferSize " + bufferSize);
+            return;
+        }
+        if (!appenders.iteratorForAppenders().hasNext()) {
+            addError("No attached appenders found for [" + name + "]");
+            return;
+        }
+        int capacity = Integer.highestOneBit(bufferSize - 1) << 1;
+        if (capacity != bufferSize) {
+            addInfo("Rounding bufferSize " + bufferSize + " up to " + capacity);
+        }
+        mask = capacity - 1;
+        slots = new ILoggingEvent[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        tail.set(0);
+        head.set(0);
+
+        super.start();
+        worker = new Thread(this::drainLoop, "RingBufferAsyncAppender-Worker-" + getName());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        LockSupport.unpark(worker);
+        try {
+            worker.join(maxFlushTimeMillis);
+            if (worker.isAlive()) {
+                addWarn("Max flush time (" + maxFlushTimeMillis + " ms) exceeded, "
+                        + getQueueDepth() + " queued events were possibly discarded");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addError("Failed to join worker thread", e);
+        }
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        event.prepareForDeferredProcessing();
+        if (includeCallerData) {
+            event.getCallerData();
+        }
+        if (offer(event) || (!neverBlock && offerBlocking(event))) {
+            if (consumerParked) {
+                LockSupport.unpark(worker);
+            }
+            return;
+        }
+        dropped.increment();
+    }
+
+    /**
+     * Chiếm slot tại tail, trả về false nếu buffer đầy
+     */
+    private boolean offer(ILoggingEvent event) {
+        long position = tail.get();
+        for (;;) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = event;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private boolean offerBlocking(ILoggingEvent event) {
+        long deadline = maxBlockMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMillis) : 0;
+        while (isStarted()) {
+            if (consumerParked) {
+                LockSupport.unpark(worker);
+            }
+            LockSupport.parkNanos(PRODUCER_BACKOFF_NANOS);
+            if (offer(event)) {
+                return true;
+            }
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void drainLoop() {
+        ILoggingEvent[] batch = new ILoggingEvent[Math.max(1, maxBatchSize)];
+        int idle = 0;
+        while (isStarted()) {
+            int drained = drain(batch);
+            if (drained > 0) {
+                write(batch, drained);
+                idle = 0;
+            } else {
+                idle = waitForEvents(idle);
+            }
+        }
+        // Đã stop: ghi nốt phần còn lại trong buffer
+        int drained;
+        while ((drained = drain(batch)) > 0) {
+            write(batch, drained);
+        }
+    }
+
+    private int drain(ILoggingEvent[] batch) {
+        long position = head.get();
+        int count = 0;
+        while (count < batch.length) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            batch[count++] = slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+        }
+        if (count > 0) {
+            head.lazySet(position);
+        }
+        return count;
+    }
+
+    private void write(ILoggingEvent[] batch, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            try {
+                appenders.appendLoopOnAppenders(batch[i]);
+            } catch (RuntimeException e) {
+                addError("Failed to append event", e);
+            }
+            batch[i] = null;
+        }
+        batchLatencyRecorder.accept(System.nanoTime() - start);
+    }
+
+    private int waitForEvents(int idle) {
+        switch (waitStrategy) {
+            case BUSY_SPIN -> Thread.onSpinWait();
+            case YIELDING -> Thread.yield();
+            case SLEEPING -> {
+                if (idle < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(SLEEP_NANOS);
+                }
+            }
+            case BLOCKING -> {
+                if (idle < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    consumerParked = true;
+                    // Kiểm tra lại sau khi đặt cờ để không lỡ event vừa được publish
+                    if (sequences.get((int) (head.get() & mask)) != head.get() + 1) {
+                        LockSupport.parkNanos(this, BLOCKING_PARK_NANOS);
+                    }
+                    consumerParked = false;
+                }
+            }
+        }
+        return Math.min(idle + 1, SPIN_TRIES);
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> newAppender) {
+        addInfo("Attaching appender named [" + newAppender.getName() + "] to " + getName());
+        appenders.addAppender(newAppender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
@@ -0,0 +1,234 @@
+package vn.com.leaselink.commons.log;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mask các field nhạy cảm ({@link LoggingProperties#getSensitiveFields()}) trong payload, header và query string.
+ * <p>
+ * Tên field được compile một lần thành bảng tra theo ký tự cuối. Một field bị coi là nhạy cảm khi tên
+ * (không phân biệt hoa thường, bỏ qua '_' và '-') bằng hoặc kết thúc bằng một tên đã cấu hình,
+ * ví dụ {@code token} khớp cả {@code accessToken} và {@code refresh_token}.
+ * <p>
+ * JSON được mask trong một lượt streaming bằng JsonParser/JsonGenerator, không dựng tree và không dùng regex.
+ * Payload bị cắt ngắn (do maxPayloadLength) vẫn được xử lý: phần đã đọc được giữ lại, giá trị dở dang bị bỏ.
+ */
+public class SensitiveDataMasker {
+
+    public static final String MASK = "******";
+    public static final String TRUNCATED_MARKER = "...(truncated)";
+
+    private static final int ASCII = 128;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Tên field đã chuẩn hoá (lowercase, bỏ '_' và '-'), nhóm theo ký tự cuối
+     */
+    private final char[][][] fieldsByLastChar = new char[ASCII][][];
+
+    public SensitiveDataMasker(Collection<String> sensitiveFields) {
+        List<List<char[]>> buckets = new ArrayList<>(ASCII);
+        for (int i = 0; i < ASCII; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (String field : sensitiveFields) {
+            char[] normalized = normalize(field);
+            if (normalized.length > 0 && normalized[normalized.length - 1] < ASCII) {
+                buckets.get(normalized[normalized.length - 1]).add(normalized);
+            }
+        }
+        for (int i = 0; i < ASCII; i++) {
+            if (!buckets.get(i).isEmpty()) {
+                fieldsByLastChar[i] = buckets.get(i).toArray(new char[0][]);
+            }
+        }
+    }
+
+    public boolean isSensitive(String name) {
+        return name != null && isSensitive(name.toCharArray(), 0, name.length());
+    }
+
+    /**
+     * Kiểm tra tên field trực tiếp trên buffer ký tự, không cấp phát
+     */
+    public boolean isSensitive(char[] name, int offset, int length) {
+        int end = offset + length - 1;
+        while (end >= offset && isSeparator(name[end])) {
+            end--;
+        }
+        if (end < offset) {
+            return false;
+        }
+        char last = Character.toLowerCase(name[end]);
+        if (last >= ASCII || fieldsByLastChar[last] == null) {
+            return false;
+        }
+        for (char[] field : fieldsByLastChar[last]) {
+            if (endsWith(name, offset, end, field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mask payload theo content type: JSON, form-urlencoded; các loại khác giữ nguyên
+     */
+    public String maskPayload(byte[] payload, MediaType contentType, boolean truncated) {
+        if (payload.length == 0) {
+            return "";
+        }
+        if (contentType != null && MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
+            String masked = maskQueryString(new String(payload, StandardCharsets.UTF_8));
+            return truncated ? masked + TRUNCATED_MARKER : masked;
+        }
+        if (isJson(payload, contentType)) {
+            return maskJson(payload, 0, payload.length, truncated);
+        }
+        String raw = new String(payload, StandardCharsets.UTF_8);
+        return truncated ? raw + TRUNCATED_MARKER : raw;
+    }
+
+    /**
+     * Mask JSON trong một lượt streaming
+     */
+    public String maskJson(byte[] json, int offset, int length, boolean truncated) {
+        StringWriter writer = new StringWriter(length);
+        boolean complete = true;
+        JsonGenerator generator = null;
+        try (JsonParser parser = jsonFactory.createParser(json, offset, length)) {
+            generator = jsonFactory.createGenerator(writer);
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                generator.copyCurrentEvent(parser);
+                if (token == JsonToken.FIELD_NAME
+                        && isSensitive(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())) {
+                    JsonToken value = parser.nextToken();
+                    if (value == null) {
+                        break;
+                    }
+                    if (value.isStructStart()) {
+                        parser.skipChildren();
+                    }
+                    generator.writeString(MASK);
+                }
+            }
+        } catch (IOException e) {
+            // Payload bị cắt hoặc không hợp lệ: chỉ giữ phần đã sinh ra
+            complete = false;
+        } finally {
+            closeQuietly(generator);
+        }
+        return complete && !truncated ? writer.toString() : writer + TRUNCATED_MARKER;
+    }
+
+    /**
+     * Mask giá trị của các tham số nhạy cảm trong query string / form body
+     */
+    public String maskQueryString(String query) {
+        if (query == null || query.isEmpty()) {
+            return query;
+        }
+        StringBuilder sb = new StringBuilder(query.length());
+        int start = 0;
+        int length = query.length();
+        while (start <= length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = query.indexOf('=', start);
+            if (equals > start && equals < end && isSensitive(query.substring(start, equals))) {
+                sb.append(query, start, equals + 1).append(MASK);
+            } else {
+                sb.append(query, start, end);
+            }
+            if (end < length) {
+                sb.append('&');
+            }
+            start = end + 1;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Trả về bản copy của headers với giá trị nhạy cảm đã được mask
+     */
+    public Map<String, List<String>> maskHeaders(Map<String, List<String>> headers) {
+        Map<String, List<String>> masked = new LinkedHashMap<>(headers.size() * 2);
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            masked.put(entry.getKey(), isSensitive(entry.getKey()) ? List.of(MASK) : entry.getValue());
+        }
+        return masked;
+    }
+
+    private static boolean isJson(byte[] payload, MediaType contentType) {
+        if (contentType != null) {
+            return MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+                    || contentType.getSubtype().endsWith("+json");
+        }
+        for (byte b : payload) {
+            if (!Character.isWhitespace(b)) {
+                return b == '{' || b == '[';
+            }
+        }
+        return false;
+    }
+
+    private static boolean endsWith(char[] name, int offset, int end, char[] field) {
+        int i = end;
+        for (int j = field.length - 1; j >= 0; j--) {
+            while (i >= offset && isSeparator(name[i])) {
+                i--;
+            }
+            if (i < offset || Character.toLowerCase(name[i]) != field[j]) {
+                return false;
+            }
+            i--;
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '_' || c == '-';
+    }
+
+    private static char[] normalize(String field) {
+        StringBuilder sb = new StringBuilder(field.length());
+        String lower = field.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (!isSeparator(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toCharArray();
+    }
+
+    private static void closeQuietly(JsonGenerator generator) {
+        if (generator == null) {
+            return;
+        }
+        try {
+            // flush trước để phần đã sinh ra luôn nằm trong writer, kể cả khi close() không đóng được object dở dang
+            generator.flush();
+            generator.close();
+        } catch (IOException | RuntimeException ignored) {
+            // Generator đang dở một field, phần đã ghi vẫn nằm trong writer
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package vn.com.leaselink.commons.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phát hiện task giữ thread non-blocking quá lâu, thay cho việc bật ReactorDebugAgent ở mọi môi trường.
+ * <p>
+ * Một watchdog thread kiểm tra định kỳ:
+ * <ul>
+ *     <li>thread {@link reactor.core.scheduler.NonBlocking} của Reactor (parallel, single): task được bọc qua
+ *     {@link Schedulers#onScheduleHook} để ghi thời điểm bắt đầu</li>
+ *     <li>event loop của reactor-netty: gửi một task thăm dò, task chưa chạy sau ngưỡng nghĩa là loop đang
+ *     bị giữ (bởi task hiện tại hoặc hàng đợi dồn)</li>
+ * </ul>
+ * Mỗi lần phát hiện tăng {@code reactor.blocking.detected{caller}}, với caller là class ứng dụng đầu tiên
+ * trên stack của thread bị chặn; stack trace đầy đủ chỉ được log theo mẫu ({@code blockingStackSampleIntervalMs}).
+ */
+@Slf4j
+public class BlockingDetector {
+
+    private static final String HOOK_KEY = BlockingDetector.class.getName();
+    private static final String[] FRAMEWORK_PACKAGES = {
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "reactor.", "io.netty.", "io.micrometer.",
+            "org.springframework.", "kotlin.", BlockingDetector.class.getName()
+    };
+
+    private final MeterRegistry meterRegistry;
+    private final long thresholdNanos;
+    private final long checkIntervalMillis;
+    private final long stackSampleIntervalNanos;
+
+    private final ConcurrentHashMap<Thread, ThreadState> threads = new ConcurrentHashMap<>();
+    private final ThreadLocal<ThreadState> currentThread = new ThreadLocal<>();
+    private final List<EventLoopProbe> probes = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastStackLogNanos = new AtomicLong();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "blocking-detector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BlockingDetector(MeterRegistry meterRegistry, Duration threshold, Duration checkInterval,
+                            Duration stackSampleInterval) {
+        this.meterRegistry = meterRegistry;
+        this.thresholdNanos = threshold.toNanos();
+        this.checkIntervalMillis = Math.max(1, checkInterval.toMillis());
+        this.stackSampleIntervalNanos = stackSampleInterval.toNanos();
+        this.lastStackLogNanos.set(System.nanoTime() - stackSampleIntervalNanos);
+    }
+
+    public BlockingDetector install() {
+        log.info("Enabling blocking detector (threshold {}ms)", TimeUnit.NANOSECONDS.toMillis(thresholdNanos));
+        Schedulers.onScheduleHook(HOOK_KEY, TrackedTask::new);
+        watchdog.scheduleWithFixedDelay(this::check, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Theo dõi các event loop của group (ví dụ event loop HTTP server của reactor-netty)
+     */
+    public void watchEventLoops(EventLoopGroup group) {
+        for (EventExecutor executor : group) {
+            probes.add(new EventLoopProbe(executor));
+        }
+    }
+
+    public void dispose() {
+        Schedulers.resetOnScheduleHook(HOOK_KEY);
+        watchdog.shutdownNow();
+    }
+
+    private void check() {
+        try {
+            long now = System.nanoTime();
+            threads.values().removeIf(state -> !state.thread.isAlive());
+            for (ThreadState state : threads.values()) {
+                state.check(now);
+            }
+            for (EventLoopProbe probe : probes) {
+                probe.check(now);
+            }
+        } catch (Throwable e) {
+            // Không để lỗi làm dừng watchdog
+            log.debug("Blocking detector check failed", e);
+        }
+    }
+
+    private void report(Thread thread, long blockedNanos) {
+        StackTraceElement[] stack = thread.getStackTrace();
+        String caller = caller(stack);
+        meterRegistry.counter("reactor.blocking.detected", "caller", caller).increment();
+
+        long now = System.nanoTime();
+        long last = lastStackLogNanos.get();
+        if (now - last >= stackSampleIntervalNanos && lastStackLogNanos.compareAndSet(last, now)) {
+            BlockedThreadStackTrace trace = new BlockedThreadStackTrace(thread.getName());
+            trace.setStackTrace(stack);
+            log.warn("Non-blocking thread {} blocked for {}ms by {}",
+                    thread.getName(), TimeUnit.NANOSECONDS.toMillis(blockedNanos), caller, trace);
+        }
+    }
+
+    /**
+     * Class ứng dụng đầu tiên trên stack, bỏ qua JDK và framework
+     */
+    static String caller(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (!isFramework(frame.getClassName())) {
+                return frame.getClassName();
+            }
+        }
+        return stack.length > 0 ? stack[0].getClassName() : "unknown";
+    }
+
+    private static boolean isFramework(String className) {
+        for (String prefix : FRAMEWORK_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ThreadState currentThreadState() {
+        ThreadState state = currentThread.get();
+        if (state == null) {
+            state = new ThreadState(Thread.currentThread());
+            currentThread.set(state);
+            threads.put(state.thread, state);
+        }
+        return state;
+    }
+
+    /**
+     * Task đang chạy trên một thread non-blocking của Reactor
+     */
+    private final class ThreadState {
+
+        private final Thread thread;
+        private volatile long taskStartNanos;
+        private long reportedStartNanos;
+
+        ThreadState(Thread thread) {
+            this.thread = thread;
+        }
+
+        void check(long now) {
+            long start = taskStartNanos;
+            if (start != 0 && now - start > thresholdNanos && reportedStartNanos != start) {
+                reportedStartNanos = start;
+                report(thread, now - start);
+            }
+        }
+    }
+
+    /**
+     * Bọc task của Reactor Scheduler, chỉ ghi thời điểm bắt đầu khi chạy trên thread NonBlocking
+     */
+    private final class TrackedTask implements Runnable {
+
+        private final Runnable task;
+
+        TrackedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!Schedulers.isInNonBlockingThread()) {
+                task.run();
+                return;
+            }
+            ThreadState state = currentThreadState();
+            long start = System.nanoTime();
+            // 0 được dùng làm "đang rảnh"
+            state.taskStartNanos = start != 0 ? start : 1;
+            try {
+                task.run();
+            } finally {
+                state.taskStartNanos = 0;
+            }
+        }
+    }
+
+    /**
+     * Thăm dò một event loop bằng task rỗng, chỉ được truy cập từ watchdog thread (trừ các field volatile)
+     */
+    private final class EventLoopProbe {
+
+        private final EventExecutor executor;
+        private volatile Thread thread;
+        private volatile long pendingSinceNanos;
+        private long reportedSinceNanos;
+
+        EventLoopProbe(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        void check(long now) {
+            long since = pendingSinceNanos;
+            if (since == 0) {
+                submit(now);
+                return;
+            }
+            Thread loopThread = thread;
+            if (now - since > thresholdNanos && reportedSinceNanos != since && loopThread != null) {
+                reportedSinceNanos = since;
+                report(loopThread, now - since);
+            }
+        }
+
+        private void submit(long now) {
+            if (executor.isShuttingDown()) {
+                probes.remove(this);
+                return;
+            }
+            pendingSinceNanos = now != 0 ? now : 1;
+            try {
+                executor.execute(() -> {
+                    thread = Thread.currentThread();
+                    pendingSinceNanos = 0;
+                });
+            } catch (RejectedExecutionException e) {
+                probes.remove(this);
+            }
+        }
+    }
+
+    /**
+     * Chỉ mang stack trace của thread bị chặn để log
+     */
+    private static final class BlockedThreadStackTrace extends Throwable {
+
+        BlockedThreadStackTrace(String threadName) {
+            super("Stack trace of " + threadName, null, false, true);
+        }
+    }
+}
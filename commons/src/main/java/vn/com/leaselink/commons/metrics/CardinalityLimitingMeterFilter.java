@@ -0,0 +1,135 @@
+package vn.com.leaselink.commons.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import lombok.extern.slf4j.Slf4j;
+import vn.com.leaselink.commons.log.LoggingProperties;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Giới hạn cardinality của tag trên mọi meter đăng ký vào MeterRegistry.
+ * <p>
+ * Tag key nằm trong {@code forbiddenTagKeys} (requestId, traceId, ...) bị bỏ khỏi meter id. Mỗi cặp
+ * (tên meter, tag key) có budget số giá trị khác nhau ({@code tagValueBudgets} hoặc {@code maxTagValues});
+ * khi vượt budget, giá trị mới được thay bằng {@value #OVERFLOW_VALUE} nên số meter luôn bị chặn trên.
+ * Số tag bị loại/gộp được đếm qua {@code metrics.cardinality.rejected{reason=forbidden|budget}}.
+ */
+@Slf4j
+public class CardinalityLimitingMeterFilter implements MeterFilter, MeterBinder {
+
+    public static final String OVERFLOW_VALUE = "OTHER";
+
+    private final Set<String> forbiddenTagKeys;
+    private final int defaultBudget;
+    private final Map<String, Integer> budgets;
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, TagValues>> tagValues = new ConcurrentHashMap<>();
+    private final LongAdder forbiddenRejected = new LongAdder();
+    private final LongAdder budgetRejected = new LongAdder();
+
+    public CardinalityLimitingMeterFilter(LoggingProperties.MetricsLog config) {
+        this.forbiddenTagKeys = Set.copyOf(config.getForbiddenTagKeys());
+        this.defaultBudget = config.getMaxTagValues();
+        this.budgets = Map.copyOf(config.getTagValueBudgets());
+    }
+
+    @Override
+    public Meter.Id map(Meter.Id id) {
+        List<Tag> tags = id.getTags();
+        if (tags.isEmpty()) {
+            return id;
+        }
+        List<Tag> limited = null;
+        for (int i = 0; i < tags.size(); i++) {
+            Tag tag = tags.get(i);
+            Tag replacement = limit(id.getName(), tag);
+            if (replacement != tag && limited == null) {
+                limited = new ArrayList<>(tags.size());
+                limited.addAll(tags.subList(0, i));
+            }
+            if (limited != null && replacement != null) {
+                limited.add(replacement);
+            }
+        }
+        return limited != null ? id.replaceTags(limited) : id;
+    }
+
+    /**
+     * @return chính tag nếu hợp lệ, tag {@value #OVERFLOW_VALUE} nếu vượt budget, null nếu key bị cấm
+     */
+    private Tag limit(String meterName, Tag tag) {
+        String key = tag.getKey();
+        if (forbiddenTagKeys.contains(key)) {
+            forbiddenRejected.increment();
+            return null;
+        }
+        TagValues values = tagValues
+                .computeIfAbsent(meterName, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new TagValues(budgets.getOrDefault(meterName, defaultBudget)));
+        if (values.admit(tag.getValue())) {
+            return tag;
+        }
+        budgetRejected.increment();
+        if (values.warnOnce()) {
+            log.warn("Tag '{}' of meter '{}' exceeded {} distinct values, further values are reported as {}",
+                    key, meterName, values.budget, OVERFLOW_VALUE);
+        }
+        return Tag.of(key, OVERFLOW_VALUE);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("metrics.cardinality.rejected", forbiddenRejected, LongAdder::sum)
+                .tag("reason", "forbidden")
+                .description("Tag bị bỏ vì key nằm trong danh sách cấm")
+                .register(registry);
+        FunctionCounter.builder("metrics.cardinality.rejected", budgetRejected, LongAdder::sum)
+                .tag("reason", "budget")
+                .description("Giá trị tag bị gộp vào OTHER vì vượt budget")
+                .register(registry);
+    }
+
+    /**
+     * Tập giá trị đã cấp cho một cặp (meter, tag key)
+     */
+    private static final class TagValues {
+
+        private final int budget;
+        private final Set<String> values = new HashSet<>();
+        private boolean warned;
+
+        TagValues(int budget) {
+            this.budget = budget;
+        }
+
+        synchronized boolean admit(String value) {
+            if (values.contains(value) || OVERFLOW_VALUE.equals(value)) {
+                return true;
+            }
+            if (values.size() >= budget) {
+                return false;
+            }
+            values.add(value);
+            return true;
+        }
+
+        synchronized boolean warnOnce() {
+            if (warned) {
+                return false;
+            }
+            warned = true;
+            return true;
+        }
+    }
+}
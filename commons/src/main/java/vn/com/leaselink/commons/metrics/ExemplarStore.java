@@ -0,0 +1,203 @@
+package vn.com.leaselink.commons.metrics;
+
+import vn.com.leaselink.commons.trace.RequestContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Exemplar (traceId của request cụ thể) cho histogram latency theo route.
+ * <p>
+ * Mỗi route có một mảng cố định theo bucket latency giữ exemplar gần nhất của bucket, và một mảng top-N
+ * request chậm nhất trong cửa sổ {@code windowMillis}. Cả hai là {@link AtomicReferenceArray}, ghi bằng
+ * set/CAS không lock; exemplar quá cửa sổ bị bỏ qua khi đọc và bị thay thế trước khi ghi.
+ * Biên bucket lấy theo SLO bucket của {@code http.server.requests} ({@code latencySlo}) để exemplar khớp
+ * bucket của histogram, không cấu hình thì dùng {@link #DEFAULT_BUCKET_BOUNDS}.
+ */
+public class ExemplarStore {
+
+    static final String OTHER_ROUTE = "OTHER";
+
+    /**
+     * Biên trên của các bucket khi không có SLO, bucket cuối luôn là +Inf
+     */
+    public static final List<Duration> DEFAULT_BUCKET_BOUNDS = Arrays.stream(
+                    new long[]{1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000})
+            .mapToObj(Duration::ofMillis)
+            .toList();
+    private static final int CAS_ATTEMPTS = 4;
+
+    private final int topN;
+    private final long windowMillis;
+    private final int maxRoutes;
+    private final long[] bucketBoundsNanos;
+    private final String[] bucketLabels;
+    private final ConcurrentHashMap<String, RouteExemplars> routes = new ConcurrentHashMap<>();
+
+    public ExemplarStore(int topN, long windowMillis, int maxRoutes) {
+        this(topN, windowMillis, maxRoutes, DEFAULT_BUCKET_BOUNDS);
+    }
+
+    /**
+     * @param bucketBounds biên trên của các bucket, rỗng thì dùng {@link #DEFAULT_BUCKET_BOUNDS}
+     */
+    public ExemplarStore(int topN, long windowMillis, int maxRoutes, List<Duration> bucketBounds) {
+        this.topN = Math.max(1, topN);
+        this.windowMillis = windowMillis;
+        this.maxRoutes = maxRoutes;
+        this.bucketBoundsNanos = (bucketBounds.isEmpty() ? DEFAULT_BUCKET_BOUNDS : bucketBounds).stream()
+                .mapToLong(Duration::toNanos)
+                .sorted()
+                .distinct()
+                .toArray();
+        this.bucketLabels = new String[bucketBoundsNanos.length + 1];
+        for (int i = 0; i < bucketBoundsNanos.length; i++) {
+            bucketLabels[i] = label(bucketBoundsNanos[i]);
+        }
+        bucketLabels[bucketBoundsNanos.length] = "+Inf";
+    }
+
+    /**
+     * Exemplar của một request
+     */
+    public record Exemplar(String traceId, String requestId, String method, int status,
+                           long durationNanos, long epochMillis) {
+
+        public double durationMillis() {
+            return durationNanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Chỉ giữ request có trace được sample, traceId của trace không được report không tra được trên Zipkin
+     */
+    public void record(String route, RequestContext requestContext, long durationNanos, int status) {
+        if (requestContext.getTraceId() == null || !requestContext.isTraceSampled()) {
+            return;
+        }
+        Exemplar exemplar = new Exemplar(requestContext.getTraceId(), requestContext.getRequestId(),
+                requestContext.getMethod(), status, durationNanos, System.currentTimeMillis());
+        RouteExemplars exemplars = route(route);
+        exemplars.buckets.set(bucketIndex(durationNanos), exemplar);
+        exemplars.offerSlowest(exemplar);
+    }
+
+    /**
+     * Top-N request chậm nhất trong cửa sổ của mỗi route, giảm dần theo latency
+     */
+    public Map<String, List<Exemplar>> slowest() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        Map<String, List<Exemplar>> slowest = new LinkedHashMap<>();
+        routes.forEach((route, exemplars) -> {
+            List<Exemplar> live = live(exemplars.slowest, cutoff);
+            if (!live.isEmpty()) {
+                live.sort(Comparator.comparingLong(Exemplar::durationNanos).reversed());
+                slowest.put(route, live);
+            }
+        });
+        return slowest;
+    }
+
+    /**
+     * Exemplar gần nhất của từng bucket (key là biên trên, mili giây hoặc {@code +Inf})
+     */
+    public Map<String, Exemplar> buckets(String route) {
+        RouteExemplars exemplars = routes.get(route);
+        Map<String, Exemplar> buckets = new LinkedHashMap<>();
+        if (exemplars == null) {
+            return buckets;
+        }
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        for (int i = 0; i < exemplars.buckets.length(); i++) {
+            Exemplar exemplar = exemplars.buckets.get(i);
+            if (exemplar != null && exemplar.epochMillis() >= cutoff) {
+                buckets.put(bucketLabels[i], exemplar);
+            }
+        }
+        return buckets;
+    }
+
+    int bucketIndex(long durationNanos) {
+        int index = Arrays.binarySearch(bucketBoundsNanos, durationNanos);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * 250ms, 0.5ms
+     */
+    private static String label(long nanos) {
+        long nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+        return nanos % nanosPerMilli == 0
+                ? nanos / nanosPerMilli + "ms"
+                : (double) nanos / nanosPerMilli + "ms";
+    }
+
+    private static List<Exemplar> live(AtomicReferenceArray<Exemplar> slots, long cutoff) {
+        List<Exemplar> live = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            Exemplar exemplar = slots.get(i);
+            if (exemplar != null && exemplar.epochMillis() >= cutoff) {
+                live.add(exemplar);
+            }
+        }
+        return live;
+    }
+
+    private RouteExemplars route(String name) {
+        RouteExemplars exemplars = routes.get(name);
+        if (exemplars != null) {
+            return exemplars;
+        }
+        if (routes.size() >= maxRoutes) {
+            name = OTHER_ROUTE;
+        }
+        return routes.computeIfAbsent(name, key -> new RouteExemplars());
+    }
+
+    /**
+     * Exemplar của một route
+     */
+    private final class RouteExemplars {
+
+        private final AtomicReferenceArray<Exemplar> buckets = new AtomicReferenceArray<>(bucketLabels.length);
+        private final AtomicReferenceArray<Exemplar> slowest = new AtomicReferenceArray<>(topN);
+
+        /**
+         * Thay slot trống/hết hạn/nhanh nhất nếu exemplar mới chậm hơn; thua CAS quá số lần thì bỏ qua
+         */
+        void offerSlowest(Exemplar exemplar) {
+            long cutoff = exemplar.epochMillis() - windowMillis;
+            for (int attempt = 0; attempt < CAS_ATTEMPTS; attempt++) {
+                int victim = -1;
+                Exemplar victimValue = null;
+                for (int i = 0; i < slowest.length(); i++) {
+                    Exemplar current = slowest.get(i);
+                    if (current == null || current.epochMillis() < cutoff) {
+                        victim = i;
+                        victimValue = current;
+                        break;
+                    }
+                    if (victimValue == null || current.durationNanos() < victimValue.durationNanos()) {
+                        victim = i;
+                        victimValue = current;
+                    }
+                }
+                if (victimValue != null && victimValue.epochMillis() >= cutoff
+                        && victimValue.durationNanos() >= exemplar.durationNanos()) {
+                    return;
+                }
+                if (slowest.compareAndSet(victim, victimValue, exemplar)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package vn.com.leaselink.commons.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code /actuator/exemplars}: top-N request chậm nhất theo route kèm traceId,
+ * hoặc exemplar theo bucket latency của một route ({@code ?route=/api/v1/contracts/{id}})
+ */
+@Endpoint(id = "exemplars")
+public class ExemplarsEndpoint {
+
+    private final ExemplarStore exemplarStore;
+
+    public ExemplarsEndpoint(ExemplarStore exemplarStore) {
+        this.exemplarStore = exemplarStore;
+    }
+
+    @ReadOperation
+    public Map<String, ?> exemplars(@Nullable String route) {
+        if (route != null) {
+            return exemplarStore.buckets(route);
+        }
+        return exemplarStore.slowest();
+    }
+}
@@ -0,0 +1,67 @@
+package vn.com.leaselink.commons.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import vn.com.leaselink.commons.log.LoggingProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cấu hình phân phối latency cho các timer trong {@code latencyMeters}: percentile (mặc định
+ * p50/p90/p99/p99.9), percentile histogram và SLO bucket theo tên operation hoặc tên meter.
+ * Cấu hình đặt trực tiếp trên timer vẫn được ưu tiên.
+ */
+public class LatencyDistributionMeterFilter implements MeterFilter {
+
+    private final Set<String> meters;
+    private final double[] percentiles;
+    private final boolean percentileHistogram;
+    private final Map<String, double[]> slo = new HashMap<>();
+
+    public LatencyDistributionMeterFilter(LoggingProperties.MetricsLog config) {
+        this.meters = Set.copyOf(config.getLatencyMeters());
+        this.percentiles = config.getLatencyPercentiles().stream().mapToDouble(Double::doubleValue).toArray();
+        this.percentileHistogram = config.isLatencyPercentileHistogram();
+        config.getLatencySlo().forEach((name, buckets) -> slo.put(name, toNanos(buckets)));
+    }
+
+    @Override
+    public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+        if (id.getType() != Meter.Type.TIMER || !meters.contains(id.getName())) {
+            return config;
+        }
+        DistributionStatisticConfig.Builder builder = DistributionStatisticConfig.builder()
+                .percentiles(percentiles)
+                .percentilesHistogram(percentileHistogram);
+        double[] buckets = sloFor(id);
+        if (buckets != null) {
+            builder.serviceLevelObjectives(buckets);
+        }
+        return config.merge(builder.build());
+    }
+
+    private double[] sloFor(Meter.Id id) {
+        String operation = id.getTag("operation");
+        double[] buckets = operation != null ? slo.get(operation) : null;
+        return buckets != null ? buckets : slo.get(id.getName());
+    }
+
+    /**
+     * SLO bucket đã cấu hình cho operation / meter {@code name}, rỗng nếu không có
+     */
+    public static List<Duration> sloBoundaries(LoggingProperties.MetricsLog config, String name) {
+        return config.getLatencySlo().getOrDefault(name, List.of());
+    }
+
+    /**
+     * SLO của Timer được tính theo nano giây
+     */
+    private static double[] toNanos(List<Duration> buckets) {
+        return buckets.stream().mapToDouble(Duration::toNanos).sorted().toArray();
+    }
+}
@@ -0,0 +1,120 @@
+package vn.com.leaselink.commons.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HdrHistogram latency (nano giây) theo nhóm ({@code http}, {@code operation}) và tên series (route, operation).
+ * <p>
+ * Ghi wait-free qua {@link Recorder}; mỗi lần {@link #snapshot()} interval histogram được cộng dồn vào
+ * histogram tích luỹ của series. Histogram cộng được với nhau ({@link Histogram#add}) nên snapshot của
+ * nhiều node có thể gộp lại; {@link #writeSnapshot(OutputStream)} ghi theo định dạng HdrHistogram log
+ * (mỗi series một tag {@code group:name}) để so sánh offline bằng HistogramLogAnalyzer.
+ * Dump được lấy qua {@link LatencyHistogramsEndpoint}.
+ */
+public class LatencyHistograms {
+
+    public static final String HTTP = "http";
+    public static final String OPERATION = "operation";
+
+    static final String OTHER_SERIES = "OTHER";
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final int maxSeries;
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Series>> groups = new ConcurrentHashMap<>();
+
+    public LatencyHistograms(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public void record(String group, String name, long durationNanos) {
+        series(group, name).recorder.recordValue(Math.max(0, durationNanos));
+    }
+
+    /**
+     * Cộng dồn các interval chưa lấy và trả về bản sao histogram tích luỹ của mọi series, key {@code group:name}
+     */
+    public Map<String, Histogram> snapshot() {
+        Map<String, Histogram> snapshot = new LinkedHashMap<>();
+        groups.forEach((group, series) -> series.forEach((name, s) -> snapshot.put(group + ":" + name, s.accumulate())));
+        return snapshot;
+    }
+
+    /**
+     * Histogram gộp của cả node cho một nhóm
+     */
+    public Histogram merged(String group) {
+        Histogram merged = new Histogram(SIGNIFICANT_DIGITS);
+        ConcurrentHashMap<String, Series> series = groups.get(group);
+        if (series != null) {
+            series.values().forEach(s -> merged.add(s.accumulate()));
+        }
+        return merged;
+    }
+
+    public void writeSnapshot(OutputStream out) {
+        PrintStream printStream = new PrintStream(out, false, StandardCharsets.UTF_8);
+        HistogramLogWriter writer = new HistogramLogWriter(printStream);
+        writer.outputLogFormatVersion();
+        writer.outputStartTime(System.currentTimeMillis());
+        writer.outputLegend();
+        snapshot().forEach((tag, histogram) -> {
+            histogram.setTag(tag);
+            writer.outputIntervalHistogram(histogram);
+        });
+        printStream.flush();
+    }
+
+    public void writeSnapshot(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            writeSnapshot(out);
+        }
+    }
+
+    private Series series(String group, String name) {
+        ConcurrentHashMap<String, Series> series = groups.computeIfAbsent(group, key -> new ConcurrentHashMap<>());
+        Series existing = series.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (seriesCount.get() >= maxSeries) {
+            name = OTHER_SERIES;
+        }
+        return series.computeIfAbsent(name, key -> {
+            seriesCount.incrementAndGet();
+            return new Series();
+        });
+    }
+
+    /**
+     * Recorder + histogram tích luỹ của một series
+     */
+    private static final class Series {
+
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        synchronized Histogram accumulate() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            total.setStartTimeStamp(Math.min(total.getStartTimeStamp(), interval.getStartTimeStamp()));
+            total.setEndTimeStamp(interval.getEndTimeStamp());
+            return total.copy();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package vn.com.leaselink.commons.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actuator endpoint {@code /actuator/latencyhistograms}: dump HdrHistogram log của mọi series (gộp nhiều node
+ * và so sánh offline bằng HistogramLogAnalyzer), hoặc percentile (ms) của một nhóm
+ * ({@code /actuator/latencyhistograms/http}) gồm histogram gộp và từng series
+ */
+@Endpoint(id = "latencyhistograms")
+public class LatencyHistogramsEndpoint {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LatencyHistograms latencyHistograms;
+
+    public LatencyHistogramsEndpoint(LatencyHistograms latencyHistograms) {
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    @ReadOperation(produces = "text/plain;charset=UTF-8")
+    public String histogramLog() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        latencyHistograms.writeSnapshot(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @ReadOperation
+    public Map<String, Object> percentiles(@Selector String group) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("merged", summary(latencyHistograms.merged(group)));
+        Map<String, Object> series = new LinkedHashMap<>();
+        String prefix = group + ":";
+        latencyHistograms.snapshot().forEach((key, histogram) -> {
+            if (key.startsWith(prefix)) {
+                series.put(key.substring(prefix.length()), summary(histogram));
+            }
+        });
+        result.put("series", series);
+        return result;
+    }
+
+    private static Map<String, Object> summary(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("p50", millis(histogram.getValueAtPercentile(50)));
+        summary.put("p90", millis(histogram.getValueAtPercentile(90)));
+        summary.put("p99", millis(histogram.getValueAtPercentile(99)));
+        summary.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        summary.put("max", millis(histogram.getMaxValue()));
+        return summary;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,225 @@
+package vn.com.leaselink.commons.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache handle của meter (Timer/Counter) theo key {@code long} đã pack sẵn từ các tag.
+ * <p>
+ * Đọc không lock và không cấp phát: bảng open-addressing chỉ thêm, ghi value trước rồi mới publish key nên
+ * reader thấy key là thấy meter. Thêm mới ghi thẳng vào bảng hiện tại, chỉ copy khi bảng đầy một nửa và
+ * tăng gấp đôi. Cache dừng nhận meter mới khi đạt {@code maxSize}, caller khi đó luôn đi đường MeterRegistry.
+ * Khi miss, caller tự dựng tag, tạo meter qua MeterRegistry rồi {@link #put(long, Meter)}.
+ */
+public class MeterHandleCache<M extends Meter> {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final String name;
+    private final int maxSize;
+    private volatile Table table = new Table(64);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MeterHandleCache(String name) {
+        this(name, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize số meter tối đa được cache, vượt quá thì {@link #put(long, Meter)} bỏ qua
+     */
+    public MeterHandleCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return meter đã cache, null nếu chưa có
+     */
+    @SuppressWarnings("unchecked")
+    public M get(long key) {
+        Object meter = table.get(key);
+        if (meter != null) {
+            hits.increment();
+            return (M) meter;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public synchronized void put(long key, M meter) {
+        Table current = table;
+        if (current.size >= maxSize || current.get(key) != null) {
+            return;
+        }
+        if (current.size + 1 > current.capacity() / 2) {
+            current = current.resize(current.capacity() << 1);
+            current.insert(key, meter);
+            table = current;
+        } else {
+            current.insert(key, meter);
+        }
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Đăng ký thống kê hit/miss/size của cache với tag {@code cache=<name>}
+     */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("metrics.handle.cache.requests", this, MeterHandleCache::getHitCount)
+                .tag("cache", name).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("metrics.handle.cache.requests", this, MeterHandleCache::getMissCount)
+                .tag("cache", name).tag("result", "miss")
+                .register(registry);
+        Gauge.builder("metrics.handle.cache.size", this, MeterHandleCache::size)
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    /**
+     * Bảng long → meter, chỉ thêm (dưới lock của cache), đọc không lock
+     */
+    private static final class Table {
+
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int mask;
+        private volatile int size;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                keys.lazySet(i, EMPTY);
+            }
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        Object get(long key) {
+            int index = mix(key) & mask;
+            for (;;) {
+                long k = keys.get(index);
+                if (k == key) {
+                    return values.get(index);
+                }
+                if (k == EMPTY) {
+                    return null;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        void insert(long key, Object value) {
+            int index = mix(key) & mask;
+            while (keys.get(index) != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            values.set(index, value);
+            keys.set(index, key);
+            size++;
+        }
+
+        Table resize(int capacity) {
+            Table resized = new Table(capacity);
+            for (int i = 0; i <= mask; i++) {
+                long key = keys.get(i);
+                if (key != EMPTY) {
+                    resized.insert(key, values.get(i));
+                }
+            }
+            return resized;
+        }
+
+        private static int mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+
+    /**
+     * Gán id số nguyên ổn định cho giá trị tag (route, tenant, operation, ...) để pack vào key
+     */
+    public static final class Ids<K> {
+
+        private final ConcurrentHashMap<K, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger next = new AtomicInteger(1);
+        private final int max;
+
+        /**
+         * @param bits số bit dành cho id trong key
+         */
+        public Ids(int bits) {
+            this(bits, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param bits   số bit dành cho id trong key
+         * @param maxIds số id tối đa được cấp, dùng cho tag mà client điều khiển được giá trị (tenant)
+         */
+        public Ids(int bits, int maxIds) {
+            this.max = Math.min((1 << bits) - 1, maxIds);
+        }
+
+        /**
+         * Tra id đã cấp, không cấp mới
+         *
+         * @return id đã cấp, 0 cho null, -1 nếu chưa có
+         */
+        public int find(K value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = ids.get(value);
+            return id != null ? id : -1;
+        }
+
+        /**
+         * @return id trong khoảng 1..2^bits-1, 0 cho null, -1 nếu đã hết id (caller bỏ qua cache)
+         */
+        public int idOf(K value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (next.get() > max) {
+                return -1;
+            }
+            id = ids.computeIfAbsent(value, key -> {
+                int assigned = next.getAndIncrement();
+                return assigned <= max ? assigned : null;
+            });
+            return id != null ? id : -1;
+        }
+    }
+}
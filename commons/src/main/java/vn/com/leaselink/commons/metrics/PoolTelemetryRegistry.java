@@ -0,0 +1,233 @@
+package vn.com.leaselink.commons.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Telemetry của các pool (JDBC/Hikari, Lettuce, AMQP channel, ...).
+ * <p>
+ * Mỗi pool đăng ký một {@link PoolState} một lần; các gauge {@code pool.active}, {@code pool.idle},
+ * {@code pool.pending}, {@code pool.total}, {@code pool.max} giữ tham chiếu mạnh tới state và chỉ đọc
+ * giá trị khi scrape.
+ * Thời gian chờ lấy connection/channel được ghi qua {@link #recordAcquire} vào timer {@code pool.acquire};
+ * lần chờ vượt ngưỡng được log warning (tối đa một lần mỗi giây cho mỗi pool).
+ */
+@Slf4j
+public class PoolTelemetryRegistry {
+
+    public static final String TYPE_JDBC = "jdbc";
+    public static final String TYPE_REDIS = "redis";
+    public static final String TYPE_AMQP = "amqp";
+
+    private static final long WARN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MeterRegistry meterRegistry;
+    private final long acquireWarnNanos;
+    private final ConcurrentHashMap<String, Pool> pools = new ConcurrentHashMap<>();
+
+    public PoolTelemetryRegistry(MeterRegistry meterRegistry, Duration acquireWarnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.acquireWarnNanos = acquireWarnThreshold.toNanos();
+    }
+
+    /**
+     * Trạng thái của pool, được đọc lúc scrape nên phải rẻ và thread-safe
+     */
+    public interface PoolState {
+
+        int active();
+
+        int idle();
+
+        int pending();
+
+        default int total() {
+            return active() + idle();
+        }
+
+        /**
+         * @return kích thước tối đa, -1 nếu không biết
+         */
+        default int max() {
+            return -1;
+        }
+    }
+
+    /**
+     * Đăng ký pool, gọi lại với cùng tên thì giữ state đã đăng ký
+     */
+    public void register(String poolName, String type, PoolState state) {
+        pools.computeIfAbsent(poolName, name -> new Pool(name, type, state));
+    }
+
+    /**
+     * Đăng ký Hikari pool, state đọc từ {@link HikariPoolMXBean} (có sau khi pool khởi tạo)
+     */
+    public void registerHikari(HikariDataSource dataSource) {
+        register(dataSource.getPoolName(), TYPE_JDBC, new PoolState() {
+            @Override
+            public int active() {
+                HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+                return pool != null ? pool.getActiveConnections() : 0;
+            }
+
+            @Override
+            public int idle() {
+                HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+                return pool != null ? pool.getIdleConnections() : 0;
+            }
+
+            @Override
+            public int pending() {
+                HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+                return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+            }
+
+            @Override
+            public int total() {
+                HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+                return pool != null ? pool.getTotalConnections() : 0;
+            }
+
+            @Override
+            public int max() {
+                return dataSource.getMaximumPoolSize();
+            }
+        });
+    }
+
+    /**
+     * State cập nhật bằng tay, dùng cho pool không tự cung cấp số liệu
+     */
+    public MutablePoolState registerMutable(String poolName, String type) {
+        MutablePoolState state = new MutablePoolState();
+        Pool pool = pools.computeIfAbsent(poolName, name -> new Pool(name, type, state));
+        if (pool.state instanceof MutablePoolState existing) {
+            return existing;
+        }
+        throw new IllegalStateException("Pool " + poolName + " is already registered with a custom state");
+    }
+
+    /**
+     * Ghi nhận thời gian chờ lấy tài nguyên từ pool
+     */
+    public void recordAcquire(String poolName, long waitNanos) {
+        Pool pool = pools.get(poolName);
+        if (pool == null) {
+            return;
+        }
+        pool.acquire.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos > acquireWarnNanos && pool.shouldWarn()) {
+            log.warn("Pool {} ({}) acquire waited {}ms - active: {}, idle: {}, pending: {}",
+                    poolName, pool.type, TimeUnit.NANOSECONDS.toMillis(waitNanos),
+                    pool.state.active(), pool.state.idle(), pool.state.pending());
+        }
+    }
+
+    /**
+     * Đo thời gian từ lúc subscribe tới khi {@code acquire} phát ra connection/channel
+     */
+    public <T> Mono<T> timeAcquire(String poolName, Mono<T> acquire) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return acquire.doOnNext(resource -> recordAcquire(poolName, System.nanoTime() - startNanos));
+        });
+    }
+
+    /**
+     * Pool đã đăng ký và các meter của nó
+     */
+    private final class Pool {
+
+        private final String type;
+        private final PoolState state;
+        private final Timer acquire;
+        private final AtomicLong lastWarnNanos = new AtomicLong(System.nanoTime() - WARN_INTERVAL_NANOS);
+
+        Pool(String name, String type, PoolState state) {
+            this.type = type;
+            this.state = state;
+            Tags tags = Tags.of("pool", name, "type", type);
+            gauge("pool.active", tags, PoolState::active);
+            gauge("pool.idle", tags, PoolState::idle);
+            gauge("pool.pending", tags, PoolState::pending);
+            gauge("pool.total", tags, PoolState::total);
+            gauge("pool.max", tags, PoolState::max);
+            this.acquire = Timer.builder("pool.acquire")
+                    .description("Thời gian chờ lấy tài nguyên từ pool")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        private void gauge(String meterName, Tags tags, ToDoubleFunction<PoolState> value) {
+            Gauge.builder(meterName, state, value)
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(meterRegistry);
+        }
+
+        boolean shouldWarn() {
+            long now = System.nanoTime();
+            long last = lastWarnNanos.get();
+            return now - last >= WARN_INTERVAL_NANOS && lastWarnNanos.compareAndSet(last, now);
+        }
+    }
+
+    /**
+     * State do caller cập nhật
+     */
+    public static final class MutablePoolState implements PoolState {
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger idle = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger(-1);
+
+        public void update(int active, int idle, int pending, int total, int max) {
+            this.active.set(active);
+            this.idle.set(idle);
+            this.pending.set(pending);
+            this.total.set(total);
+            this.max.set(max);
+        }
+
+        @Override
+        public int active() {
+            return active.get();
+        }
+
+        @Override
+        public int idle() {
+            return idle.get();
+        }
+
+        @Override
+        public int pending() {
+            return pending.get();
+        }
+
+        @Override
+        public int total() {
+            return total.get();
+        }
+
+        @Override
+        public int max() {
+            return max.get();
+        }
+    }
+}
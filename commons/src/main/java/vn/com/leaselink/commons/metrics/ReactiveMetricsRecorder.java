@@ -1,84 +1,273 @@
 package vn.com.leaselink.commons.metrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.reactivestreams.Publisher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.observability.DefaultSignalListener;
+import reactor.core.observability.SignalListener;
+import reactor.core.observability.SignalListenerFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 import vn.com.leaselink.commons.enumeration.HttpStatusOutcome;
+import vn.com.leaselink.commons.jfr.JfrEvents;
+import vn.com.leaselink.commons.jfr.OperationEvent;
+import vn.com.leaselink.commons.trace.RequestContext;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 
+/**
+ * Ghi metrics cho request/operation/cache.
+ * <p>
+ * Timer/Counter trên hot path được lấy từ {@link MeterHandleCache} theo key {@code long} pack từ id của
+ * các tag (route, tenant, method, status, ...), nên sau warm-up không phải dựng List&lt;Tag&gt; hay tra
+ * MeterRegistry cho mỗi lần ghi. Khi hết id (cardinality quá cao) thì quay về đường đăng ký thường.
+ * Tenant lấy từ header nên chỉ được cấp id khi {@link CardinalityLimitingMeterFilter} giữ nguyên giá trị
+ * (không bị gộp vào OTHER hay bị bỏ), và tối đa {@value #MAX_TENANTS} id.
+ */
 @Component
 @AllArgsConstructor
-public class ReactiveMetricsRecorder {
+public class ReactiveMetricsRecorder implements MeterBinder {
+
+    // Bố cục key http: route(24) | tenant(20) | method(4) | status(10)
+    private static final int ROUTE_BITS = 24;
+    private static final int TENANT_BITS = 20;
+    private static final int MAX_TENANTS = 1024;
+    // Bố cục key operation: operation(24) | extraTags(20) | outcome/exception(20)
+    private static final int OPERATION_BITS = 24;
+    private static final int EXTRA_TAGS_BITS = 20;
+    private static final int EXCEPTION_BITS = 20;
+
+    // Outcome của operation, là index trong OUTCOMES và cũng là phần thấp của key timer
+    private static final int OUTCOME_ERROR = 0;
+    private static final int OUTCOME_SUCCESS = 1;
+    private static final int OUTCOME_CANCEL = 2;
+    private static final String[] OUTCOMES = {"error", "success", "cancel"};
 
     private final MeterRegistry meterRegistry;
     private final ObservationRegistry observationRegistry;
+    private final RouteNormalizer routeNormalizer;
+    private final LatencyHistograms latencyHistograms;
+    private final PoolTelemetryRegistry poolTelemetry;
+
+    private final MeterHandleCache<Timer> httpTimers = new MeterHandleCache<>("http.server.requests");
+    private final MeterHandleCache<Timer> operationTimers = new MeterHandleCache<>("operation.duration");
+    private final MeterHandleCache<Counter> operationErrors = new MeterHandleCache<>("operation.errors");
+    private final MeterHandleCache<Timer> firstElementTimers = new MeterHandleCache<>("operation.first.element");
+    private final MeterHandleCache<DistributionSummary> elementSummaries = new MeterHandleCache<>("operation.elements");
+    private final MeterHandleCache<DistributionSummary> throughputSummaries = new MeterHandleCache<>("operation.throughput");
+    private final MeterHandleCache<Counter> cacheAccess = new MeterHandleCache<>("cache.access");
+
+    private final MeterHandleCache.Ids<String> routeIds = new MeterHandleCache.Ids<>(ROUTE_BITS);
+    private final MeterHandleCache.Ids<String> tenantIds = new MeterHandleCache.Ids<>(TENANT_BITS, MAX_TENANTS);
+    private final MeterHandleCache.Ids<String> operationIds = new MeterHandleCache.Ids<>(OPERATION_BITS);
+    private final MeterHandleCache.Ids<List<String>> extraTagIds = new MeterHandleCache.Ids<>(EXTRA_TAGS_BITS);
+    private final MeterHandleCache.Ids<String> exceptionIds = new MeterHandleCache.Ids<>(EXCEPTION_BITS);
+    private final MeterHandleCache.Ids<String> cacheNameIds = new MeterHandleCache.Ids<>(30);
+
+    /**
+     * Giá trị hiện tại của resource.usage (bit của double), gauge giữ tham chiếu mạnh tới AtomicLong
+     */
+    private final ConcurrentHashMap<List<String>, AtomicLong> resourceUsage = new ConcurrentHashMap<>();
+
 
+    /**
+     * Đăng ký thống kê hit/miss/size của các cache handle
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        httpTimers.bindTo(registry);
+        operationTimers.bindTo(registry);
+        operationErrors.bindTo(registry);
+        firstElementTimers.bindTo(registry);
+        elementSummaries.bindTo(registry);
+        throughputSummaries.bindTo(registry);
+        cacheAccess.bindTo(registry);
+    }
 
     /**
      * Record API request metrics
+     *
+     * @deprecated dùng {@link #recordHttpRequest(ServerWebExchange, long, int)}, Instant chỉ chính xác tới mili giây
      */
+    @Deprecated
     public void recordHttpRequest(ServerWebExchange exchange, Instant startTime, int statusCode) {
-        String path = exchange.getRequest().getPath().value();
-        String method = exchange.getRequest().getMethod().name();
-        String outcome = String.valueOf(HttpStatusOutcome.fromStatusCode(statusCode));
-        Duration duration = Duration.between(startTime, Instant.now());
+        recordHttpRequest(exchange, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - startTime.toEpochMilli()),
+                statusCode);
+    }
+
+    /**
+     * Record API request metrics với thời gian xử lý đo bằng {@link System#nanoTime()}
+     */
+    public void recordHttpRequest(ServerWebExchange exchange, long durationNanos, int statusCode) {
+        RequestContext requestContext = RequestContext.fromExchange(exchange);
+        String path = requestContext != null ? requestContext.getPath() : exchange.getRequest().getPath().value();
+        String method = requestContext != null ? requestContext.getMethod() : exchange.getRequest().getMethod().name();
+        String route = routeNormalizer.normalize(exchange, path);
+        String tenantId = requestContext != null
+                ? requestContext.getTenantId()
+                : exchange.getRequest().getHeaders().getFirst(RequestContext.TENANT_ID_HEADER);
+
+        long key = httpKey(route, tenantIds.find(tenantId), method, statusCode);
+        Timer timer = key >= 0 ? httpTimers.get(key) : null;
+        if (timer == null) {
+            timer = httpTimer(route, tenantId, method, statusCode);
+            if (key < 0 && tenantId != null && tenantId.equals(timer.getId().getTag("tenant"))) {
+                key = httpKey(route, tenantIds.idOf(tenantId), method, statusCode);
+            }
+            if (key >= 0) {
+                httpTimers.put(key, timer);
+            }
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record API request metrics, lấy thời gian bắt đầu từ RequestContext
+     */
+    public void recordHttpRequest(ServerWebExchange exchange, int statusCode) {
+        RequestContext requestContext = RequestContext.fromExchange(exchange);
+        long durationNanos = requestContext != null ? requestContext.elapsedNanos() : 0;
+        recordHttpRequest(exchange, durationNanos, statusCode);
+    }
 
+    private Timer httpTimer(String route, String tenantId, String method, int statusCode) {
         List<Tag> tags = new ArrayList<>();
-        tags.add(Tag.of("path", normalizePath(path)));
+        tags.add(Tag.of("path", route));
         tags.add(Tag.of("method", method));
         tags.add(Tag.of("status", String.valueOf(statusCode)));
-        tags.add(Tag.of("outcome", outcome));
+        tags.add(Tag.of("outcome", String.valueOf(HttpStatusOutcome.fromStatusCode(statusCode))));
 
         // Thêm tenant ID nếu có
-        String tenantId = exchange.getRequest().getHeaders().getFirst("X-Tenant-ID");
         if (tenantId != null) {
             tags.add(Tag.of("tenant", tenantId));
         }
+        return meterRegistry.timer("http.server.requests", tags);
+    }
+
+    /**
+     * @param tenantKey id của tenant, -1 nếu tenant chưa được cấp id
+     * @return key đã pack, -1 nếu không pack được (hết id, method lạ, status ngoài 0..1023)
+     */
+    private long httpKey(String route, int tenantKey, String method, int statusCode) {
+        int methodId = methodId(method);
+        int routeId = routeIds.idOf(route);
+        if (methodId == 0 || routeId < 0 || tenantKey < 0 || statusCode < 0 || statusCode > 1023) {
+            return -1;
+        }
+        return ((long) routeId << (TENANT_BITS + 14))
+                | ((long) tenantKey << 14)
+                | ((long) methodId << 10)
+                | statusCode;
+    }
 
-        meterRegistry.timer("http.server.requests", tags)
-                .record(duration.toMillis(), TimeUnit.MILLISECONDS);
+    private static int methodId(String method) {
+        if (method == null) {
+            return 0;
+        }
+        return switch (method) {
+            case "GET" -> 1;
+            case "POST" -> 2;
+            case "PUT" -> 3;
+            case "DELETE" -> 4;
+            case "PATCH" -> 5;
+            case "HEAD" -> 6;
+            case "OPTIONS" -> 7;
+            case "TRACE" -> 8;
+            default -> 0;
+        };
     }
+
     /**
      * Transformer để đo lường thời gian thực thi của một reactive operation
      */
     public <T> Function<Mono<T>, Mono<T>> recordOperation(
             String operationName, String... tags) {
 
+        // Id của operation và extra tags chỉ tính một lần cho mỗi transformer
+        long operationKey = operationKey(operationName, tags);
+
         return mono -> Mono.deferContextual(ctx -> {
-            Instant startTime = Instant.now();
+            long startNanos = System.nanoTime();
+            OperationEvent jfrEvent = JfrEvents.beginOperation(operationName, RequestContext.fromContext(ctx));
 
             return mono
                     .doOnSuccess(result -> {
-                        Duration duration = Duration.between(startTime, Instant.now());
-                        recordOperationMetrics(operationName, "success", duration, tags);
+                        recordOperationDuration(operationKey, operationName, OUTCOME_SUCCESS,
+                                System.nanoTime() - startNanos, tags);
+                        JfrEvents.commitOperation(jfrEvent, OUTCOMES[OUTCOME_SUCCESS], result != null ? 1 : 0);
                     })
                     .doOnError(error -> {
-                        Duration duration = Duration.between(startTime, Instant.now());
-                        recordOperationMetrics(operationName, "error", duration, tags);
-                        recordErrorMetrics(operationName, error, tags);
+                        recordOperationDuration(operationKey, operationName, OUTCOME_ERROR,
+                                System.nanoTime() - startNanos, tags);
+                        recordErrorMetrics(operationKey, operationName, error, tags);
+                        JfrEvents.commitOperation(jfrEvent, OUTCOMES[OUTCOME_ERROR], 0);
                     });
         });
     }
 
+    /**
+     * Transformer đo một Flux operation bằng một operator {@code tap} duy nhất:
+     * <ul>
+     *     <li>{@code operation.first.element}: từ lúc subscribe tới phần tử đầu tiên</li>
+     *     <li>{@code operation.duration}: tổng thời gian, outcome success/error/cancel</li>
+     *     <li>{@code operation.elements}: số phần tử mỗi lần subscribe</li>
+     *     <li>{@code operation.throughput}: số phần tử mỗi giây của mỗi lần subscribe</li>
+     * </ul>
+     * Mỗi subscription cấp phát một listener; mỗi phần tử chỉ tăng một bộ đếm.
+     */
+    public <T> Function<Flux<T>, Flux<T>> recordFluxOperation(String operationName, String... tags) {
+        long operationKey = operationKey(operationName, tags);
+        SignalListenerFactory<T, Void> factory = new SignalListenerFactory<>() {
+            @Override
+            public Void initializePublisherState(Publisher<? extends T> source) {
+                return null;
+            }
+
+            @Override
+            public SignalListener<T> createListener(Publisher<? extends T> source, ContextView contextView, Void state) {
+                return new FluxOperationListener<>(operationKey, operationName, tags, contextView);
+            }
+        };
+        return flux -> flux.tap(factory);
+    }
+
     /**
      * Ghi nhận cache hit rate
      */
     public void recordCacheHit(String cacheName, boolean hit) {
-        meterRegistry.counter("cache.access",
-                        List.of(Tag.of("cache", cacheName), Tag.of("result", hit ? "hit" : "miss")))
-                .increment();
+        int cacheId = cacheNameIds.idOf(cacheName);
+        long key = ((long) cacheId << 1) | (hit ? 1 : 0);
+        Counter counter = cacheId > 0 ? cacheAccess.get(key) : null;
+        if (counter == null) {
+            counter = meterRegistry.counter("cache.access",
+                    List.of(Tag.of("cache", cacheName), Tag.of("result", hit ? "hit" : "miss")));
+            if (cacheId > 0) {
+                cacheAccess.put(key, counter);
+            }
+        }
+        counter.increment();
     }
 
     /**
@@ -87,72 +276,203 @@ public class ReactiveMetricsRecorder {
     public void recordDatabaseLatency(String operation, String database, Duration duration) {
         meterRegistry.timer("database.transaction.duration",
                         List.of(Tag.of("operation", operation), Tag.of("database", database)))
-                .record(duration.toMillis(), TimeUnit.MILLISECONDS);
+                .record(duration);
     }
 
     /**
-     * Ghi nhận thông tin về connection pool
+     * Ghi nhận thông tin về connection pool. Pool tự cung cấp được state nên đăng ký thẳng vào
+     * {@link PoolTelemetryRegistry} để gauge được đọc lúc scrape.
      */
     public void recordConnectionPoolMetrics(String poolName, int activeConnections, int idleConnections, int totalConnections, int waitingThreads) {
-        meterRegistry.gauge("db.connections.active",
-                List.of(Tag.of("pool", poolName)), activeConnections);
-        meterRegistry.gauge("db.connections.idle",
-                List.of(Tag.of("pool", poolName)), idleConnections);
-        meterRegistry.gauge("db.connections.total",
-                List.of(Tag.of("pool", poolName)), totalConnections);
-        meterRegistry.gauge("db.connections.waiting",
-                List.of(Tag.of("pool", poolName)), waitingThreads);
+        poolTelemetry.registerMutable(poolName, PoolTelemetryRegistry.TYPE_JDBC)
+                .update(activeConnections, idleConnections, waitingThreads, totalConnections, -1);
     }
 
     /**
-     * Ghi nhận resource usage
+     * Ghi nhận resource usage, gauge được đăng ký một lần cho mỗi (type, name)
      */
     public void recordResourceUsage(String resourceType, String resourceName, double usage) {
-        meterRegistry.gauge("resource.usage",
-                List.of(Tag.of("type", resourceType), Tag.of("name", resourceName)), usage);
+        resourceUsage.computeIfAbsent(List.of(resourceType, resourceName), key -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("resource.usage", value, bits -> Double.longBitsToDouble(bits.get()))
+                    .tags("type", resourceType, "name", resourceName)
+                    .strongReference(true)
+                    .register(meterRegistry);
+            return value;
+        }).set(Double.doubleToLongBits(usage));
+    }
+
+    /**
+     * Gauge số task đang chờ của từng event loop ({@code netty.eventloop.pending.tasks}), đọc lúc scrape
+     */
+    public void bindEventLoopMetrics(String loopName, EventLoopGroup group) {
+        int index = 0;
+        for (EventExecutor executor : group) {
+            if (executor instanceof SingleThreadEventExecutor eventLoop) {
+                Gauge.builder("netty.eventloop.pending.tasks", eventLoop, SingleThreadEventExecutor::pendingTasks)
+                        .tags("loop", loopName, "executor", String.valueOf(index))
+                        .strongReference(true)
+                        .register(meterRegistry);
+            }
+            index++;
+        }
     }
 
     // Helper methods
 
-    private void recordOperationMetrics(String operationName, String outcome, Duration duration, String... extraTags) {
-        List<Tag> tags = new ArrayList<>();
-        tags.add(Tag.of("operation", operationName));
-        tags.add(Tag.of("outcome", outcome));
+    /**
+     * @return operation(24) | extraTags(20) dịch trái {@value #EXCEPTION_BITS} bit, -1 nếu hết id
+     */
+    private long operationKey(String operationName, String... extraTags) {
+        int operationId = operationIds.idOf(operationName);
+        int extraTagsId = extraTags == null || extraTags.length == 0
+                ? 0
+                : extraTagIds.idOf(Arrays.asList(extraTags.clone()));
+        if (operationId <= 0 || extraTagsId < 0) {
+            return -1;
+        }
+        return (((long) operationId << EXTRA_TAGS_BITS) | extraTagsId) << EXCEPTION_BITS;
+    }
 
-        // Thêm extra tags
-        if (extraTags != null && extraTags.length > 0) {
-            for (int i = 0; i < extraTags.length - 1; i += 2) {
-                if (i + 1 < extraTags.length) {
-                    tags.add(Tag.of(extraTags[i], extraTags[i + 1]));
-                }
+    private void recordOperationDuration(long operationKey, String operationName, int outcome,
+                                         long durationNanos, String... extraTags) {
+        operationTimer(operationKey, operationName, outcome, extraTags).record(durationNanos, TimeUnit.NANOSECONDS);
+        latencyHistograms.record(LatencyHistograms.OPERATION, operationName, durationNanos);
+    }
+
+    private Timer operationTimer(long operationKey, String operationName, int outcome, String... extraTags) {
+        long key = operationKey | outcome;
+        Timer timer = operationKey >= 0 ? operationTimers.get(key) : null;
+        if (timer == null) {
+            timer = meterRegistry.timer("operation.duration",
+                    operationTags(operationName, Tag.of("outcome", OUTCOMES[outcome]), extraTags));
+            if (operationKey >= 0) {
+                operationTimers.put(key, timer);
+            }
+        }
+        return timer;
+    }
+
+    private void recordErrorMetrics(long operationKey, String operationName, Throwable error, String... extraTags) {
+        String exception = error.getClass().getSimpleName();
+        int exceptionId = operationKey >= 0 ? exceptionIds.idOf(exception) : -1;
+        long key = operationKey | exceptionId;
+        Counter counter = exceptionId > 0 ? operationErrors.get(key) : null;
+        if (counter == null) {
+            counter = meterRegistry.counter("operation.errors",
+                    operationTags(operationName, Tag.of("exception", exception), extraTags));
+            if (exceptionId > 0) {
+                operationErrors.put(key, counter);
+            }
+        }
+        counter.increment();
+    }
+
+    private Timer firstElementTimer(long operationKey, String operationName, String... extraTags) {
+        Timer timer = operationKey >= 0 ? firstElementTimers.get(operationKey) : null;
+        if (timer == null) {
+            timer = Timer.builder("operation.first.element")
+                    .tags(operationTags(operationName, null, extraTags))
+                    .register(meterRegistry);
+            if (operationKey >= 0) {
+                firstElementTimers.put(operationKey, timer);
             }
         }
+        return timer;
+    }
 
-        meterRegistry.timer("operation.duration", tags)
-                .record(duration.toMillis(), TimeUnit.MILLISECONDS);
+    private DistributionSummary summary(MeterHandleCache<DistributionSummary> cache, String name, String baseUnit,
+                                        long operationKey, String operationName, String... extraTags) {
+        DistributionSummary summary = operationKey >= 0 ? cache.get(operationKey) : null;
+        if (summary == null) {
+            summary = DistributionSummary.builder(name)
+                    .baseUnit(baseUnit)
+                    .tags(operationTags(operationName, null, extraTags))
+                    .register(meterRegistry);
+            if (operationKey >= 0) {
+                cache.put(operationKey, summary);
+            }
+        }
+        return summary;
     }
 
-    private void recordErrorMetrics(String operationName, Throwable error, String... extraTags) {
+    /**
+     * Trạng thái đo của một subscription Flux, chỉ được truy cập tuần tự theo Reactive Streams
+     */
+    private final class FluxOperationListener<T> extends DefaultSignalListener<T> {
+
+        private final long operationKey;
+        private final String operationName;
+        private final String[] extraTags;
+        private final ContextView contextView;
+        private long startNanos;
+        private long elements;
+        private OperationEvent jfrEvent;
+
+        FluxOperationListener(long operationKey, String operationName, String[] extraTags, ContextView contextView) {
+            this.operationKey = operationKey;
+            this.operationName = operationName;
+            this.extraTags = extraTags;
+            this.contextView = contextView;
+        }
+
+        @Override
+        public void doFirst() {
+            startNanos = System.nanoTime();
+            jfrEvent = JfrEvents.beginOperation(operationName, RequestContext.fromContext(contextView));
+        }
+
+        @Override
+        public void doOnNext(T value) {
+            if (elements++ == 0) {
+                firstElementTimer(operationKey, operationName, extraTags)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void doOnComplete() {
+            finish(OUTCOME_SUCCESS);
+        }
+
+        @Override
+        public void doOnError(Throwable error) {
+            finish(OUTCOME_ERROR);
+            recordErrorMetrics(operationKey, operationName, error, extraTags);
+        }
+
+        @Override
+        public void doOnCancel() {
+            finish(OUTCOME_CANCEL);
+        }
+
+        private void finish(int outcome) {
+            long durationNanos = System.nanoTime() - startNanos;
+            recordOperationDuration(operationKey, operationName, outcome, durationNanos, extraTags);
+            summary(elementSummaries, "operation.elements", "elements", operationKey, operationName, extraTags)
+                    .record(elements);
+            if (durationNanos > 0) {
+                summary(throughputSummaries, "operation.throughput", "elements/s", operationKey, operationName, extraTags)
+                        .record(elements * 1e9 / durationNanos);
+            }
+            JfrEvents.commitOperation(jfrEvent, OUTCOMES[outcome], elements);
+        }
+    }
+
+    private static List<Tag> operationTags(String operationName, Tag tag, String... extraTags) {
         List<Tag> tags = new ArrayList<>();
         tags.add(Tag.of("operation", operationName));
-        tags.add(Tag.of("exception", error.getClass().getSimpleName()));
+        if (tag != null) {
+            tags.add(tag);
+        }
 
         // Thêm extra tags
         if (extraTags != null && extraTags.length > 0) {
             for (int i = 0; i < extraTags.length - 1; i += 2) {
-                if (i + 1 < extraTags.length) {
-                    tags.add(Tag.of(extraTags[i], extraTags[i + 1]));
-                }
+                tags.add(Tag.of(extraTags[i], extraTags[i + 1]));
             }
         }
-
-        meterRegistry.counter("operation.errors", tags).increment();
-    }
-
-    private String normalizePath(String path) {
-        // Normalize các path parameters như /users/123 thành /users/{id}
-        return path.replaceAll("/[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "/{uuid}")
-                .replaceAll("/[0-9]+", "/{id}");
+        return tags;
     }
 
 
@@ -0,0 +1,371 @@
+package vn.com.leaselink.commons.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Scannable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Instrument các Reactor Scheduler (boundedElastic, parallel, newSingle, ...), opt-in qua
+ * {@code logging.reactive.metrics.scheduler-metrics}:
+ * <ul>
+ *     <li>{@link Schedulers#addExecutorServiceDecorator}: theo dõi executor của từng scheduler để đọc
+ *     {@code reactor.scheduler.tasks.queued}, {@code reactor.scheduler.threads.active} lúc scrape, và bọc
+ *     executor để ghi {@code reactor.scheduler.task.wait}: từ thời điểm task đến hạn (lúc submit + delay,
+ *     với task định kỳ là hạn của từng lần chạy) tới lúc chạy, nên delay cố ý không bị tính là chờ</li>
+ *     <li>{@link Schedulers#onScheduleHook}: bọc task để ghi {@code reactor.scheduler.task.execution}</li>
+ * </ul>
+ * Tên scheduler lấy từ tên scheduler (decorator) và tên thread bỏ hậu tố {@code -N} (task), hai cách
+ * cho cùng kết quả với các scheduler tạo qua {@link Schedulers}. Decorator chỉ áp dụng cho executor
+ * tạo sau khi {@link #install()}, boundedElastic tạo worker mới liên tục nên vẫn được phủ.
+ */
+@Slf4j
+public class ReactorSchedulerMetrics {
+
+    private static final String HOOK_KEY = ReactorSchedulerMetrics.class.getName();
+    private static final int MAX_SCHEDULERS = 64;
+    private static final String OTHER_SCHEDULER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, SchedulerMeters> schedulers = new ConcurrentHashMap<>();
+    private final ThreadLocal<SchedulerMeters> threadMeters = new ThreadLocal<>();
+
+    public ReactorSchedulerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ReactorSchedulerMetrics install() {
+        log.info("Instrumenting Reactor schedulers");
+        Schedulers.addExecutorServiceDecorator(HOOK_KEY, this::track);
+        Schedulers.onScheduleHook(HOOK_KEY, TimedTask::new);
+        return this;
+    }
+
+    public void dispose() {
+        Schedulers.resetOnScheduleHook(HOOK_KEY);
+        Schedulers.removeExecutorServiceDecorator(HOOK_KEY);
+    }
+
+    private ScheduledExecutorService track(Scheduler scheduler, ScheduledExecutorService executor) {
+        SchedulerMeters meters = meters(schedulerName(scheduler));
+        meters.executors.add(executor);
+        return new WaitTimedExecutor(executor, meters.wait);
+    }
+
+    /**
+     * {@code Schedulers.newSingle("async-log-sink")} → {@code async-log-sink},
+     * {@code Schedulers.boundedElastic()} → {@code boundedElastic}
+     */
+    static String schedulerName(Scheduler scheduler) {
+        String name = Scannable.from(scheduler).name();
+        int quote = name.indexOf('"');
+        if (quote >= 0) {
+            int end = name.indexOf('"', quote + 1);
+            return end > quote ? name.substring(quote + 1, end) : name.substring(quote + 1);
+        }
+        if (name.startsWith("Schedulers.")) {
+            name = name.substring("Schedulers.".length());
+        }
+        int paren = name.indexOf('(');
+        return paren >= 0 ? name.substring(0, paren) : name;
+    }
+
+    /**
+     * Tên thread {@code boundedElastic-12} → {@code boundedElastic}
+     */
+    static String threadSchedulerName(String threadName) {
+        int end = threadName.length();
+        int i = end;
+        while (i > 0 && Character.isDigit(threadName.charAt(i - 1))) {
+            i--;
+        }
+        return i < end && i > 1 && threadName.charAt(i - 1) == '-' ? threadName.substring(0, i - 1) : threadName;
+    }
+
+    private SchedulerMeters meters(String name) {
+        SchedulerMeters meters = schedulers.get(name);
+        if (meters != null) {
+            return meters;
+        }
+        if (schedulers.size() >= MAX_SCHEDULERS) {
+            name = OTHER_SCHEDULER;
+        }
+        return schedulers.computeIfAbsent(name, SchedulerMeters::new);
+    }
+
+    private SchedulerMeters currentThreadMeters() {
+        SchedulerMeters meters = threadMeters.get();
+        if (meters == null) {
+            meters = meters(threadSchedulerName(Thread.currentThread().getName()));
+            threadMeters.set(meters);
+        }
+        return meters;
+    }
+
+    /**
+     * Meter và các executor đang sống của một scheduler
+     */
+    private final class SchedulerMeters {
+
+        private final Set<ScheduledExecutorService> executors = ConcurrentHashMap.newKeySet();
+        private final Timer wait;
+        private final Timer execution;
+        private final Counter tasks;
+
+        SchedulerMeters(String name) {
+            Gauge.builder("reactor.scheduler.tasks.queued", this, SchedulerMeters::queued)
+                    .tag("scheduler", name)
+                    .description("Số task đang chờ trong queue của các executor")
+                    .register(meterRegistry);
+            Gauge.builder("reactor.scheduler.threads.active", this, SchedulerMeters::active)
+                    .tag("scheduler", name)
+                    .description("Số thread đang chạy task")
+                    .register(meterRegistry);
+            Gauge.builder("reactor.scheduler.executors", this, SchedulerMeters::executorCount)
+                    .tag("scheduler", name)
+                    .register(meterRegistry);
+            this.wait = Timer.builder("reactor.scheduler.task.wait")
+                    .tag("scheduler", name)
+                    .description("Thời gian từ lúc task đến hạn tới lúc bắt đầu chạy")
+                    .register(meterRegistry);
+            this.execution = Timer.builder("reactor.scheduler.task.execution")
+                    .tag("scheduler", name)
+                    .register(meterRegistry);
+            this.tasks = Counter.builder("reactor.scheduler.tasks.completed")
+                    .tag("scheduler", name)
+                    .register(meterRegistry);
+        }
+
+        double queued() {
+            long queued = 0;
+            for (ScheduledExecutorService executor : live()) {
+                if (executor instanceof ThreadPoolExecutor pool) {
+                    queued += pool.getQueue().size();
+                }
+            }
+            return queued;
+        }
+
+        double active() {
+            long active = 0;
+            for (ScheduledExecutorService executor : live()) {
+                if (executor instanceof ThreadPoolExecutor pool) {
+                    active += pool.getActiveCount();
+                }
+            }
+            return active;
+        }
+
+        double executorCount() {
+            return live().size();
+        }
+
+        /**
+         * Bỏ executor đã shutdown (worker boundedElastic bị evict) trước khi đọc
+         */
+        private Set<ScheduledExecutorService> live() {
+            executors.removeIf(ScheduledExecutorService::isShutdown);
+            return executors;
+        }
+    }
+
+    /**
+     * Task đã được schedule, ghi thời gian chạy theo scheduler của thread thực thi
+     */
+    private final class TimedTask implements Runnable {
+
+        private final Runnable task;
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            SchedulerMeters meters = currentThreadMeters();
+            long startNanos = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                meters.execution.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                meters.tasks.increment();
+            }
+        }
+    }
+
+    /**
+     * Task kèm thời điểm đến hạn, ghi độ trễ so với hạn khi bắt đầu chạy.
+     * {@code periodNanos} &gt; 0: fixed rate (hạn kế tiếp = hạn trước + period), &lt; 0: fixed delay
+     * (hạn kế tiếp = lúc chạy xong + delay), 0: chạy một lần
+     */
+    private static final class DueTask<V> implements Runnable, Callable<V> {
+
+        private final Timer wait;
+        private final Callable<V> task;
+        private final long periodNanos;
+        private long dueNanos;
+
+        DueTask(Timer wait, Callable<V> task, long delayNanos, long periodNanos) {
+            this.wait = wait;
+            this.task = task;
+            this.periodNanos = periodNanos;
+            this.dueNanos = System.nanoTime() + Math.max(0, delayNanos);
+        }
+
+        @Override
+        public void run() {
+            try {
+                call();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public V call() throws Exception {
+            wait.record(Math.max(0, System.nanoTime() - dueNanos), TimeUnit.NANOSECONDS);
+            try {
+                return task.call();
+            } finally {
+                if (periodNanos > 0) {
+                    dueNanos += periodNanos;
+                } else if (periodNanos < 0) {
+                    dueNanos = System.nanoTime() - periodNanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * Executor của scheduler, bọc mọi task submit/schedule thành {@link DueTask}
+     */
+    private static final class WaitTimedExecutor implements ScheduledExecutorService {
+
+        private final ScheduledExecutorService delegate;
+        private final Timer wait;
+
+        WaitTimedExecutor(ScheduledExecutorService delegate, Timer wait) {
+            this.delegate = delegate;
+            this.wait = wait;
+        }
+
+        private <V> DueTask<V> due(Callable<V> task, long delay, TimeUnit unit, long periodNanos) {
+            return new DueTask<>(wait, task, unit.toNanos(delay), periodNanos);
+        }
+
+        private DueTask<Object> due(Runnable task, long delay, TimeUnit unit, long periodNanos) {
+            return due(Executors.callable(task), delay, unit, periodNanos);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return delegate.schedule((Runnable) due(command, delay, unit, 0), delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return delegate.schedule((Callable<V>) due(callable, delay, unit, 0), delay, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return delegate.scheduleAtFixedRate(due(command, initialDelay, unit, unit.toNanos(period)),
+                    initialDelay, period, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+                                                         TimeUnit unit) {
+            return delegate.scheduleWithFixedDelay(due(command, initialDelay, unit, -unit.toNanos(delay)),
+                    initialDelay, delay, unit);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit((Callable<T>) due(task, 0, TimeUnit.NANOSECONDS, 0));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit((Runnable) due(task, 0, TimeUnit.NANOSECONDS, 0), result);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit((Runnable) due(task, 0, TimeUnit.NANOSECONDS, 0));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(due(command, 0, TimeUnit.NANOSECONDS, 0));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(tasks);
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return delegate.invokeAll(tasks, timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+                throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(tasks);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(tasks, timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package vn.com.leaselink.commons.metrics;
+
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chuẩn hoá path thành route template để làm tag metrics / key thống kê, giữ cardinality thấp.
+ * <p>
+ * Ưu tiên pattern mà WebFlux đã match ({@link HandlerMapping#BEST_MATCHING_PATTERN_ATTRIBUTE}).
+ * Khi không có (404, filter trả về sớm, sampler chạy trước routing, ...), path được đi qua một trie theo
+ * segment: segment dạng UUID, số, TSID được thay bằng {@code {uuid}}, {@code {id}}, {@code {tsid}}.
+ * <p>
+ * Trie chỉ học từ raw path của request đã match route, nên path rác (scan, 404) không làm trie phình ra:
+ * segment literal chưa có trong trie được gộp thành {@code {var}}. Khi học, một node có quá nhiều segment
+ * literal khác nhau, segment sâu hơn {@code maxDepth} hoặc trie đã đủ {@code maxNodes} node thì segment
+ * mới cũng được gộp thành {@code {var}}.
+ * Kết quả đã resolve được cache trong LRU có giới hạn, chia stripe để giảm tranh chấp lock.
+ */
+public class RouteNormalizer {
+
+    static final String UUID = "{uuid}";
+    static final String ID = "{id}";
+    static final String TSID = "{tsid}";
+    static final String VAR = "{var}";
+
+    private static final int STRIPES = 16;
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+    private static final int DEFAULT_MAX_LITERAL_CHILDREN = 128;
+    private static final int DEFAULT_MAX_NODES = 10_000;
+    private static final int DEFAULT_MAX_DEPTH = 16;
+    private static final String LEARNED_ATTRIBUTE = RouteNormalizer.class.getName() + ".learned";
+
+    private final Node root = new Node("", 0);
+    private final int maxLiteralChildren;
+    private final int maxNodes;
+    private final int maxDepth;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final LruStripe[] cache = new LruStripe[STRIPES];
+
+    public RouteNormalizer() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_MAX_LITERAL_CHILDREN);
+    }
+
+    public RouteNormalizer(int cacheSize, int maxLiteralChildren) {
+        this(cacheSize, maxLiteralChildren, DEFAULT_MAX_NODES, DEFAULT_MAX_DEPTH);
+    }
+
+    public RouteNormalizer(int cacheSize, int maxLiteralChildren, int maxNodes, int maxDepth) {
+        this.maxLiteralChildren = maxLiteralChildren;
+        this.maxNodes = maxNodes;
+        this.maxDepth = maxDepth;
+        // cacheSize 0 = không cache, mọi path đều đi qua trie
+        int perStripe = Math.max(0, cacheSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            cache[i] = new LruStripe(perStripe);
+        }
+    }
+
+    /**
+     * Route của exchange: pattern đã match nếu có, ngược lại chuẩn hoá raw path
+     */
+    public String normalize(ServerWebExchange exchange, String path) {
+        Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String patternString = pattern instanceof PathPattern pathPattern ? pathPattern.getPatternString()
+                : pattern instanceof String string ? string
+                : null;
+        String rawPath = path != null ? path : exchange.getRequest().getPath().value();
+        if (patternString == null) {
+            return normalize(rawPath);
+        }
+        // Route đã match: học raw path một lần cho mỗi exchange để các lần chuẩn hoá trước routing dùng được
+        if (exchange.getAttributes().putIfAbsent(LEARNED_ATTRIBUTE, Boolean.TRUE) == null) {
+            learn(rawPath);
+        }
+        return patternString;
+    }
+
+    /**
+     * Chuẩn hoá raw path theo trie đã học, ví dụ {@code /users/123/orders} thành {@code /users/{id}/orders};
+     * segment literal chưa học thành {@code {var}}
+     */
+    public String normalize(String path) {
+        LruStripe stripe = stripe(path);
+        String template = stripe.get(path);
+        if (template != null) {
+            return template;
+        }
+        Walk walk = walk(path, false);
+        // Kết quả chưa resolve hết có thể đổi khi trie học thêm, không cache
+        if (walk.resolved()) {
+            stripe.put(path, walk.template());
+        }
+        return walk.template();
+    }
+
+    /**
+     * Thêm raw path của một request đã match route vào trie
+     */
+    public void learn(String path) {
+        LruStripe stripe = stripe(path);
+        if (stripe.get(path) == null) {
+            stripe.put(path, walk(path, true).template());
+        }
+    }
+
+    private LruStripe stripe(String path) {
+        return cache[(path.hashCode() ^ (path.hashCode() >>> 16)) & (STRIPES - 1)];
+    }
+
+    private Walk walk(String path, boolean learn) {
+        Node node = root;
+        StringBuilder collapsed = null;
+        int length = path.length();
+        int start = 0;
+        while (start < length) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            String segment = classify(path, start, end);
+            start = end;
+            if (collapsed == null) {
+                Node next = learn ? child(node, segment) : node.find(segment);
+                if (next != null) {
+                    node = next;
+                    continue;
+                }
+                collapsed = new StringBuilder(path.length()).append(node.template);
+            }
+            collapsed.append('/').append(isPlaceholder(segment) ? segment : VAR);
+        }
+        if (collapsed != null) {
+            // Hết budget node khi học cũng không đổi về sau, vẫn cache được
+            return new Walk(collapsed.toString(), learn);
+        }
+        return new Walk(node == root ? "/" : node.template, true);
+    }
+
+    /**
+     * Node con cho segment, tạo mới nếu cần; null nếu trie đã hết budget node
+     */
+    private Node child(Node parent, String segment) {
+        Node child = parent.children.get(segment);
+        if (child != null) {
+            return child;
+        }
+        if (!isPlaceholder(segment)
+                && (parent.children.size() >= maxLiteralChildren || parent.depth >= maxDepth)) {
+            segment = VAR;
+        }
+        return parent.children.computeIfAbsent(segment, key -> {
+            if (nodeCount.incrementAndGet() > maxNodes) {
+                nodeCount.decrementAndGet();
+                return null;
+            }
+            return new Node(parent.template + "/" + key, parent.depth + 1);
+        });
+    }
+
+    private static boolean isPlaceholder(String segment) {
+        return segment == ID || segment == UUID || segment == TSID;
+    }
+
+    /**
+     * Trả về placeholder cho segment động, hoặc chính segment nếu là literal
+     */
+    static String classify(String path, int start, int end) {
+        int length = end - start;
+        if (isNumeric(path, start, end)) {
+            return ID;
+        }
+        if (length == 36 && isUuid(path, start)) {
+            return UUID;
+        }
+        if (length == 13 && isTsid(path, start, end)) {
+            return TSID;
+        }
+        return path.substring(start, end);
+    }
+
+    private static boolean isNumeric(String path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return end > start;
+    }
+
+    private static boolean isUuid(String path, int start) {
+        for (int i = 0; i < 36; i++) {
+            char c = path.charAt(start + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * TSID dạng Crockford base32 13 ký tự: ký tự đầu là số 0-7 và có ít nhất một chữ cái
+     */
+    private static boolean isTsid(String path, int start, int end) {
+        char first = path.charAt(start);
+        if (first < '0' || first > '7') {
+            return false;
+        }
+        boolean letter = false;
+        for (int i = start + 1; i < end; i++) {
+            char c = Character.toUpperCase(path.charAt(i));
+            if (c >= '0' && c <= '9') {
+                continue;
+            }
+            if (c < 'A' || c > 'Z' || c == 'I' || c == 'L' || c == 'O' || c == 'U') {
+                return false;
+            }
+            letter = true;
+        }
+        // Toàn số đã được nhận là {id}; TSID thường có cả chữ
+        return letter;
+    }
+
+    /**
+     * Node của trie, template được tính một lần khi node được tạo
+     */
+    private static final class Node {
+
+        private final String template;
+        private final int depth;
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+
+        Node(String template, int depth) {
+            this.template = template;
+            this.depth = depth;
+        }
+
+        /**
+         * Node con đã học cho segment, literal không có thì dùng nhánh {@code {var}} nếu có
+         */
+        Node find(String segment) {
+            Node child = children.get(segment);
+            if (child == null && !isPlaceholder(segment)) {
+                child = children.get(VAR);
+            }
+            return child;
+        }
+    }
+
+    private record Walk(String template, boolean resolved) {
+    }
+
+    /**
+     * Một stripe của LRU cache raw path → template
+     */
+    private static final class LruStripe {
+
+        private final LinkedHashMap<String, String> entries;
+
+        LruStripe(int capacity) {
+            this.entries = new LinkedHashMap<>(Math.min(capacity, 256) * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized String get(String path) {
+            return entries.get(path);
+        }
+
+        synchronized void put(String path, String template) {
+            entries.put(path, template);
+        }
+    }
+}
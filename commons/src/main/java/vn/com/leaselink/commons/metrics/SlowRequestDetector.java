@@ -0,0 +1,157 @@
+package vn.com.leaselink.commons.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.server.ServerWebExchange;
+import vn.com.leaselink.commons.log.LoggingProperties;
+import vn.com.leaselink.commons.trace.RequestContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Phát hiện request chậm theo từng route dựa trên histogram latency thực tế.
+ * <p>
+ * Mỗi route có một HdrHistogram {@link Recorder} (ghi wait-free). Hết mỗi cửa sổ
+ * ({@code slowRequestWindowSeconds}), percentile cấu hình của cửa sổ vừa xong được dùng làm ngưỡng cho
+ * cửa sổ kế tiếp: {@code max(slowRequestFloorMs, pXX × slowRequestFactor)}. Route chưa đủ mẫu, hoặc khi
+ * tắt adaptive, dùng ngưỡng tuyệt đối {@code slowRequestThresholdMs}.
+ * <p>
+ * Request chậm được ghi thành event có cấu trúc vào logger {@value #PERF_LOGGER} (appender PERF).
+ */
+public class SlowRequestDetector {
+
+    public static final String PERF_LOGGER = "vn.com.leaselink.commons.performance";
+
+    private static final Logger perfLog = LoggerFactory.getLogger(PERF_LOGGER);
+
+    static final String OTHER_ROUTE = "OTHER";
+
+    private final LoggingProperties.MetricsLog config;
+    private final RouteNormalizer routeNormalizer;
+    private final long absoluteThresholdMicros;
+    private final long floorMicros;
+    private final long windowNanos;
+    private final double percentile;
+
+    private final ConcurrentHashMap<String, RouteLatency> routes = new ConcurrentHashMap<>();
+    private final RouteLatency otherRoute;
+
+    public SlowRequestDetector(LoggingProperties.MetricsLog config, RouteNormalizer routeNormalizer) {
+        this.config = config;
+        this.routeNormalizer = routeNormalizer;
+        this.absoluteThresholdMicros = TimeUnit.MILLISECONDS.toMicros(config.getSlowRequestThresholdMs());
+        this.floorMicros = TimeUnit.MILLISECONDS.toMicros(config.getSlowRequestFloorMs());
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, config.getSlowRequestWindowSeconds()));
+        this.percentile = config.getSlowRequestPercentile() * 100.0;
+        this.otherRoute = new RouteLatency(OTHER_ROUTE, System.nanoTime() + windowNanos);
+    }
+
+    /**
+     * Ghi nhận latency của request và log event nếu chậm
+     *
+     * @return true nếu request bị coi là chậm
+     */
+    public boolean record(ServerWebExchange exchange, RequestContext requestContext, long durationNanos, int statusCode) {
+        return record(routeNormalizer.normalize(exchange, requestContext.getPath()), requestContext, durationNanos,
+                statusCode);
+    }
+
+    /**
+     * Như {@link #record(ServerWebExchange, RequestContext, long, int)} khi caller đã có route chuẩn hoá
+     */
+    public boolean record(String routeName, RequestContext requestContext, long durationNanos, int statusCode) {
+        long durationMicros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        RouteLatency route = route(routeName);
+        long threshold = route.record(durationMicros);
+        if (!config.isLogSlowRequests() || durationMicros <= threshold) {
+            return false;
+        }
+        perfLog.warn("SLOW_REQUEST {} {} {} {} {} {} {} {} {} {}",
+                kv("route", route.name),
+                kv("method", requestContext.getMethod()),
+                kv("path", requestContext.getPath()),
+                kv("status", statusCode),
+                kv("durationMs", durationMicros / 1000.0),
+                kv("thresholdMs", threshold / 1000.0),
+                kv("thresholdSource", threshold == absoluteThresholdMicros ? "absolute" : "adaptive"),
+                kv("requestId", requestContext.getRequestId()),
+                kv("traceId", requestContext.getTraceId()),
+                kv("tenantId", requestContext.getTenantId()));
+        return true;
+    }
+
+    /**
+     * Ngưỡng hiện tại của một route (micro giây), dùng cho kiểm tra/giám sát
+     */
+    public long currentThresholdMicros(String route) {
+        RouteLatency latency = routes.get(route);
+        return latency != null ? latency.threshold() : absoluteThresholdMicros;
+    }
+
+    private RouteLatency route(String name) {
+        RouteLatency latency = routes.get(name);
+        if (latency != null) {
+            return latency;
+        }
+        if (routes.size() >= config.getSlowRequestMaxRoutes()) {
+            return otherRoute;
+        }
+        return routes.computeIfAbsent(name, key -> new RouteLatency(key, System.nanoTime() + windowNanos));
+    }
+
+    /**
+     * Histogram cuộn của một route
+     */
+    private final class RouteLatency {
+
+        private final String name;
+        private final Recorder recorder = new Recorder(2);
+        private final AtomicLong nextRotation;
+        private volatile Histogram recycled;
+
+        /**
+         * Ngưỡng adaptive tính từ cửa sổ trước (micro giây), -1 nếu chưa có
+         */
+        private volatile long adaptiveThreshold = -1;
+
+        RouteLatency(String name, long firstRotation) {
+            this.name = name;
+            this.nextRotation = new AtomicLong(firstRotation);
+        }
+
+        long record(long durationMicros) {
+            recorder.recordValue(Math.max(0, durationMicros));
+            long now = System.nanoTime();
+            long deadline = nextRotation.get();
+            if (now - deadline >= 0 && nextRotation.compareAndSet(deadline, now + windowNanos)) {
+                rotate();
+            }
+            return threshold();
+        }
+
+        long threshold() {
+            long adaptive = adaptiveThreshold;
+            return config.isAdaptiveSlowRequests() && adaptive >= 0 ? adaptive : absoluteThresholdMicros;
+        }
+
+        /**
+         * Chỉ một thread (thắng CAS) chạy tại một thời điểm
+         */
+        private void rotate() {
+            Histogram interval = recorder.getIntervalHistogram(recycled);
+            recycled = interval;
+            if (interval.getTotalCount() < config.getSlowRequestMinSamples()) {
+                // Không đủ mẫu: giữ ngưỡng cũ
+                return;
+            }
+            long value = interval.getValueAtPercentile(percentile);
+            adaptiveThreshold = Math.max(floorMicros, (long) (value * config.getSlowRequestFactor()));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package vn.com.leaselink.commons.trace;
+
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sampler head-based cho request HTTP, thay cho {@code Sampler.ALWAYS_SAMPLE}.
+ * <p>
+ * Thứ tự quyết định:
+ * <ol>
+ *     <li>có debug header: luôn sample, không tính vào rate limit</li>
+ *     <li>{@code respectUpstream} và upstream đã quyết định (B3 / traceparent): theo upstream, không tính vào
+ *     rate limit</li>
+ *     <li>rule đầu tiên khớp method + route đã chuẩn hoá, không khớp thì dùng probability mặc định</li>
+ *     <li>request qua bước 3 còn phải qua rate limit {@code tracesPerSecond} chung của service</li>
+ * </ol>
+ * Rule khớp được cache theo method + route. Mọi quyết định được đếm ở
+ * {@code tracing.sampler.decisions{decision, reason}}. {@link HttpServerTracing} luôn hỏi sampler này trước
+ * cờ sampled đã extract, nên debug header và {@code respectUpstream=false} ghi đè được quyết định của
+ * upstream. Dùng làm {@link Sampler} của {@code Tracing} thì
+ * trace không xuất phát từ HTTP chỉ đi qua probability mặc định và rate limit.
+ */
+public class HttpRequestSampler extends Sampler implements SamplerFunction<ServerHttpRequest> {
+
+    private static final String B3_SAMPLED = "X-B3-Sampled";
+    private static final String B3_FLAGS = "X-B3-Flags";
+    private static final String B3_SINGLE = "b3";
+    private static final String TRACEPARENT = "traceparent";
+    private static final int MAX_CACHED_ROUTES = 2048;
+
+    private final RouteNormalizer routeNormalizer;
+    private final String debugHeader;
+    private final boolean respectUpstream;
+    private final Sampler rateLimiter;
+    private final RouteRule defaultRule;
+    private final List<RouteRule> rules;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ConcurrentHashMap<String, RouteRule> routeRules = new ConcurrentHashMap<>();
+
+    private final Counter sampledDebug;
+    private final Counter sampledUpstream;
+    private final Counter sampledRule;
+    private final Counter sampledDefault;
+    private final Counter droppedUpstream;
+    private final Counter droppedRule;
+    private final Counter droppedDefault;
+    private final Counter droppedRateLimited;
+
+    public HttpRequestSampler(TracingProperties.Sampling sampling, RouteNormalizer routeNormalizer,
+                              MeterRegistry meterRegistry) {
+        this.routeNormalizer = routeNormalizer;
+        this.debugHeader = StringUtils.hasText(sampling.getDebugHeader()) ? sampling.getDebugHeader() : null;
+        this.respectUpstream = sampling.isRespectUpstream();
+        this.rateLimiter = sampling.getTracesPerSecond() > 0
+                ? RateLimitingSampler.create(sampling.getTracesPerSecond())
+                : ALWAYS_SAMPLE;
+        this.defaultRule = new RouteRule(null, null, sampling.getProbability(), false);
+        this.rules = sampling.getRules().stream()
+                .map(rule -> new RouteRule(rule.getPath(),
+                        StringUtils.hasText(rule.getMethod()) ? rule.getMethod().toUpperCase() : null,
+                        rule.getProbability(), true))
+                .toList();
+
+        this.sampledDebug = decisions(meterRegistry, "sampled", "debug");
+        this.sampledUpstream = decisions(meterRegistry, "sampled", "upstream");
+        this.sampledRule = decisions(meterRegistry, "sampled", "rule");
+        this.sampledDefault = decisions(meterRegistry, "sampled", "default");
+        this.droppedUpstream = decisions(meterRegistry, "dropped", "upstream");
+        this.droppedRule = decisions(meterRegistry, "dropped", "rule");
+        this.droppedDefault = decisions(meterRegistry, "dropped", "default");
+        this.droppedRateLimited = decisions(meterRegistry, "dropped", "rate_limited");
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String decision, String reason) {
+        return Counter.builder("tracing.sampler.decisions")
+                .tag("decision", decision)
+                .tag("reason", reason)
+                .description("Số quyết định sample trace theo lý do")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Boolean trySample(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        if (debugHeader != null && headers.containsKey(debugHeader)) {
+            sampledDebug.increment();
+            return true;
+        }
+        Boolean upstream = respectUpstream ? upstreamDecision(headers) : null;
+        if (upstream != null) {
+            (upstream ? sampledUpstream : droppedUpstream).increment();
+            return upstream;
+        }
+        String method = request.getMethod().name();
+        return sample(rule(method, routeNormalizer.normalize(request.getPath().pathWithinApplication().value())));
+    }
+
+    /**
+     * Trace không xuất phát từ request HTTP (consumer, job, ...)
+     */
+    @Override
+    public boolean isSampled(long traceId) {
+        return sample(defaultRule);
+    }
+
+    private boolean sample(RouteRule rule) {
+        if (!rule.sampler.isSampled(0L)) {
+            (rule.matched ? droppedRule : droppedDefault).increment();
+            return false;
+        }
+        if (!rateLimiter.isSampled(0L)) {
+            droppedRateLimited.increment();
+            return false;
+        }
+        (rule.matched ? sampledRule : sampledDefault).increment();
+        return true;
+    }
+
+    private RouteRule rule(String method, String route) {
+        String key = method + ' ' + route;
+        RouteRule rule = routeRules.get(key);
+        if (rule != null) {
+            return rule;
+        }
+        rule = match(method, route);
+        if (routeRules.size() < MAX_CACHED_ROUTES) {
+            routeRules.putIfAbsent(key, rule);
+        }
+        return rule;
+    }
+
+    private RouteRule match(String method, String route) {
+        for (RouteRule rule : rules) {
+            if ((rule.method == null || rule.method.equals(method)) && pathMatcher.match(rule.path, route)) {
+                return rule;
+            }
+        }
+        return defaultRule;
+    }
+
+    /**
+     * Cờ sampled/debug của B3 (multi và single header) hoặc W3C traceparent
+     *
+     * @return null nếu upstream chưa quyết định
+     */
+    static Boolean upstreamDecision(HttpHeaders headers) {
+        if ("1".equals(headers.getFirst(B3_FLAGS))) {
+            return true;
+        }
+        String sampled = headers.getFirst(B3_SAMPLED);
+        if (sampled != null) {
+            return "1".equals(sampled) || "true".equalsIgnoreCase(sampled);
+        }
+        String b3 = headers.getFirst(B3_SINGLE);
+        if (b3 != null) {
+            // {traceId}-{spanId}-{sampling}[-{parentSpanId}] hoặc chỉ {sampling}
+            String[] parts = b3.split("-", 4);
+            String flag = parts.length == 1 ? parts[0] : parts.length >= 3 ? parts[2] : null;
+            return flag == null ? null : "1".equals(flag) || "d".equals(flag);
+        }
+        String traceparent = headers.getFirst(TRACEPARENT);
+        // {version}-{traceId}-{parentId}-{flags}, bit thấp của flags là sampled
+        if (traceparent != null && traceparent.length() >= 55) {
+            int flags = Character.digit(traceparent.charAt(54), 16);
+            return flags >= 0 ? (flags & 1) == 1 : null;
+        }
+        return null;
+    }
+
+    /**
+     * Rule đã biên dịch, {@code matched = false} cho rule mặc định
+     */
+    private static final class RouteRule {
+
+        private final String path;
+        private final String method;
+        private final Sampler sampler;
+        private final boolean matched;
+
+        RouteRule(String path, String method, float probability, boolean matched) {
+            this.path = path;
+            this.method = method;
+            this.sampler = Sampler.create(probability);
+            this.matched = matched;
+        }
+    }
+}
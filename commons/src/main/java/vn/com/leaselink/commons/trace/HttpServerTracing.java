@@ -0,0 +1,91 @@
+package vn.com.leaselink.commons.trace;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import brave.sampler.SamplerFunction;
+import brave.sampler.SamplerFunctions;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Tạo và kết thúc server span cho một request HTTP.
+ * <p>
+ * Context được extract từ header theo propagation của {@link Tracing} (B3): có context thì join span của
+ * upstream, không có thì tạo trace mới. Quyết định của {@code sampler} (ví dụ {@link HttpRequestSampler},
+ * vốn tự xét debug header và cờ sampled của upstream) được hỏi trước và ghi đè cờ đã extract; sampler trả
+ * null thì giữ quyết định của upstream. Span được giữ trong attribute của exchange để các thành phần sau
+ * (GlobalErrorHandler, ...) dùng thay cho {@code tracer.currentSpan()}, vốn không có trên thread của
+ * reactive chain.
+ */
+public class HttpServerTracing {
+
+    public static final String SPAN_ATTRIBUTE = HttpServerTracing.class.getName() + ".span";
+
+    private final Tracer tracer;
+    private final TraceContext.Extractor<ServerHttpRequest> extractor;
+    private final SamplerFunction<ServerHttpRequest> sampler;
+
+    /**
+     * @param sampler null = dùng sampler của {@link Tracing}
+     */
+    public HttpServerTracing(Tracing tracing, SamplerFunction<ServerHttpRequest> sampler) {
+        this.tracer = tracing.tracer();
+        this.extractor = tracing.propagation().extractor((request, key) -> request.getHeaders().getFirst(key));
+        this.sampler = sampler != null ? sampler : SamplerFunctions.deferDecision();
+    }
+
+    /**
+     * Span đã được filter tạo cho exchange, null nếu filter chưa chạy
+     */
+    public static Span currentSpan(ServerWebExchange exchange) {
+        return exchange.getAttribute(SPAN_ATTRIBUTE);
+    }
+
+    public Span startSpan(ServerHttpRequest request) {
+        TraceContextOrSamplingFlags extracted = extractor.extract(request);
+        Boolean sampled = sampler.trySample(request);
+        if (sampled != null) {
+            extracted = extracted.sampled(sampled.booleanValue());
+        }
+        Span span = extracted.context() != null
+                ? tracer.joinSpan(extracted.context())
+                : tracer.nextSpan(extracted);
+        if (!span.isNoop()) {
+            span.kind(Span.Kind.SERVER)
+                    .tag("http.method", request.getMethod().name())
+                    .tag("http.path", request.getPath().value());
+        }
+        return span.start();
+    }
+
+    /**
+     * Kết thúc span với route đã chuẩn hoá và status; lỗi hoặc status 5xx được đánh dấu {@code error}
+     */
+    public void finishSpan(Span span, String method, String route, int status, Throwable error) {
+        if (span.isNoop()) {
+            span.finish();
+            return;
+        }
+        span.name(method + " " + route)
+                .tag("http.route", route)
+                .tag("http.status_code", String.valueOf(status));
+        if (error != null) {
+            span.error(error);
+        } else if (status >= 500) {
+            span.tag("error", String.valueOf(status));
+        }
+        span.finish();
+    }
+
+    /**
+     * Client huỷ request trước khi có response; span vẫn được kết thúc bởi {@link #finishSpan}
+     */
+    public void cancelSpan(Span span) {
+        if (!span.isNoop()) {
+            span.annotate("cancel");
+        }
+    }
+}
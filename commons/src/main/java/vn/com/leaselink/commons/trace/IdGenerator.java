@@ -0,0 +1,13 @@
+package vn.com.leaselink.commons.trace;
+
+/**
+ * Sinh request ID khi request không mang sẵn ID từ upstream (trace/span ID do Brave sinh).
+ * Có thể thay thế bằng cách khai báo một bean IdGenerator khác.
+ */
+public interface IdGenerator {
+
+    /**
+     * ID dạng chuỗi ngắn, dùng cho request ID
+     */
+    String nextId();
+}
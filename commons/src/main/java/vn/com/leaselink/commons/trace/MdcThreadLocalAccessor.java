@@ -0,0 +1,165 @@
+package vn.com.leaselink.commons.trace;
+
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.context.ThreadLocalAccessor;
+import org.slf4j.MDC;
+import vn.com.leaselink.commons.log.LoggingProperties;
+
+/**
+ * ThreadLocalAccessor cho {@link RequestContext}, đăng ký một lần với Micrometer context-propagation.
+ * <p>
+ * Khi {@code Hooks.enableAutomaticContextPropagation()} được bật, Reactor dùng accessor này để
+ * đặt/khôi phục MDC mỗi khi signal chuyển thread. Chỉ các key trong {@link LoggingProperties.MdcKeys}
+ * được ghi và xoá, các giá trị MDC khác của thread không bị ảnh hưởng.
+ */
+public final class MdcThreadLocalAccessor implements ThreadLocalAccessor<RequestContext> {
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private static volatile MdcThreadLocalAccessor instance = new MdcThreadLocalAccessor(new LoggingProperties.MdcKeys());
+
+    private final String requestIdKey;
+    private final String traceIdKey;
+    private final String spanIdKey;
+    private final String userIdKey;
+    private final String tenantIdKey;
+    private final String pathKey;
+    private final String methodKey;
+    private final String operationKey;
+
+    private MdcThreadLocalAccessor(LoggingProperties.MdcKeys keys) {
+        this.requestIdKey = keys.getRequestId();
+        this.traceIdKey = keys.getTraceId();
+        this.spanIdKey = keys.getSpanId();
+        this.userIdKey = keys.getUserId();
+        this.tenantIdKey = keys.getTenantId();
+        this.pathKey = keys.getPath();
+        this.methodKey = keys.getMethod();
+        this.operationKey = keys.getOperation();
+    }
+
+    /**
+     * Đăng ký accessor cho RequestContext và key operation, thay thế accessor đã đăng ký trước đó
+     */
+    public static synchronized MdcThreadLocalAccessor register(LoggingProperties.MdcKeys keys) {
+        MdcThreadLocalAccessor accessor = new MdcThreadLocalAccessor(keys);
+        ContextRegistry registry = ContextRegistry.getInstance();
+        registry.registerThreadLocalAccessor(accessor);
+        registry.registerThreadLocalAccessor(new MdcKeyAccessor(accessor.operationKey));
+        instance = accessor;
+        return accessor;
+    }
+
+    /**
+     * Accessor đang được dùng (mặc định dùng tên key mặc định nếu chưa register)
+     */
+    public static MdcThreadLocalAccessor get() {
+        return instance;
+    }
+
+    public String getOperationKey() {
+        return operationKey;
+    }
+
+    @Override
+    public Object key() {
+        return RequestContext.CONTEXT_KEY;
+    }
+
+    @Override
+    public RequestContext getValue() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public void setValue(RequestContext value) {
+        if (CURRENT.get() == value) {
+            return;
+        }
+        CURRENT.set(value);
+        MDC.put(requestIdKey, value.getRequestId());
+        MDC.put(traceIdKey, value.getTraceId());
+        MDC.put(spanIdKey, value.getSpanId());
+        MDC.put(methodKey, value.getMethod());
+        MDC.put(pathKey, value.getPath());
+        putOrRemove(userIdKey, value.getUserId());
+        putOrRemove(tenantIdKey, value.getTenantId());
+    }
+
+    @Override
+    public void setValue() {
+        if (CURRENT.get() == null) {
+            return;
+        }
+        CURRENT.remove();
+        MDC.remove(requestIdKey);
+        MDC.remove(traceIdKey);
+        MDC.remove(spanIdKey);
+        MDC.remove(methodKey);
+        MDC.remove(pathKey);
+        MDC.remove(userIdKey);
+        MDC.remove(tenantIdKey);
+    }
+
+    /**
+     * Chạy action với MDC của request, sau đó khôi phục đúng các key đã thay đổi.
+     * Không làm gì thêm nếu thread đã mang sẵn RequestContext này.
+     */
+    public void runWith(RequestContext value, Runnable action) {
+        RequestContext previous = CURRENT.get();
+        if (value == null || value == previous) {
+            action.run();
+            return;
+        }
+        setValue(value);
+        try {
+            action.run();
+        } finally {
+            if (previous != null) {
+                setValue(previous);
+            } else {
+                setValue();
+            }
+        }
+    }
+
+    private static void putOrRemove(String key, String value) {
+        if (value != null) {
+            MDC.put(key, value);
+        } else {
+            MDC.remove(key);
+        }
+    }
+
+    /**
+     * Accessor cho một key MDC dạng String (ví dụ operation) được ghi trực tiếp vào Reactor Context
+     */
+    static final class MdcKeyAccessor implements ThreadLocalAccessor<String> {
+
+        private final String key;
+
+        MdcKeyAccessor(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object key() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return MDC.get(key);
+        }
+
+        @Override
+        public void setValue(String value) {
+            MDC.put(key, value);
+        }
+
+        @Override
+        public void setValue() {
+            MDC.remove(key);
+        }
+    }
+}
@@ -17,6 +17,17 @@ public class ReactiveContextPropagation {
     private static final String SESSION_ID = "sessionId";
     private static final String TENANT_ID = "tenantId";
 
+    /**
+     * Tạo Context chứa RequestContext dưới một key duy nhất
+     */
+    public static Context createContext(RequestContext requestContext) {
+        return Context.of(RequestContext.CONTEXT_KEY, requestContext);
+    }
+
+    /**
+     * @deprecated dùng {@link #createContext(RequestContext)}, giữ lại cho các service cũ
+     */
+    @Deprecated
     public static Context createContext(String requestId, String traceId, String spanId,
                                         String userId, String sessionId, String tenantId) {
         Map<String, Object> contextMap = new HashMap<>();
@@ -30,20 +41,14 @@ public class ReactiveContextPropagation {
     }
 
     /**
-     * Transformer để đặt MDC từ Context trong Reactive chain
+     * Transformer để đặt MDC từ Context trong Reactive chain.
+     * <p>
+     * MDC được đặt/khôi phục bởi {@link MdcThreadLocalAccessor} khi automatic context propagation
+     * được bật (ReactorHooksConfiguration), nên transformer này không còn copy MDC ở mỗi signal.
+     * Giữ lại để tương thích với các service đang gọi.
      */
     public static <T> Function<Mono<T>, Mono<T>> withMdc() {
-        return mono -> mono
-                .doOnEach(signal -> {
-                    if (signal.isOnNext() || signal.isOnError()) {
-                        signal.getContextView().forEach((key, value) -> {
-                            if (value instanceof String) {
-                                MDC.put(key.toString(), (String) value);
-                            }
-                        });
-                    }
-                })
-                .doFinally(signalType -> MDC.clear());
+        return Function.identity();
     }
 
 
@@ -52,12 +57,12 @@ public class ReactiveContextPropagation {
      */
     public static Mono<Map<String, String>> captureContextToMdc() {
         return Mono.deferContextual(ctx -> {
-            ctx.forEach((key, value) -> {
-                if (value instanceof String) {
-                    MDC.put(key.toString(), (String) value);
-                }
-            });
-            return Mono.just(MDC.getCopyOfContextMap());
+            RequestContext requestContext = RequestContext.fromContext(ctx);
+            if (requestContext != null) {
+                MdcThreadLocalAccessor.get().setValue(requestContext);
+            }
+            Map<String, String> contextMap = MDC.getCopyOfContextMap();
+            return Mono.just(contextMap != null ? contextMap : Map.of());
         });
     }
 
@@ -85,22 +90,23 @@ public class ReactiveContextPropagation {
             contextMap = new java.util.HashMap<>();
         }
 
-        addToMapIfPresent(contextMap, ctx, REQUEST_ID);
-        addToMapIfPresent(contextMap, ctx, TRACE_ID);
-        addToMapIfPresent(contextMap, ctx, SPAN_ID);
-        addToMapIfPresent(contextMap, ctx, USER_ID);
-        addToMapIfPresent(contextMap, ctx, SESSION_ID);
-        addToMapIfPresent(contextMap, ctx, TENANT_ID);
+        RequestContext requestContext = RequestContext.fromContext(ctx);
+        if (requestContext != null) {
+            putIfNotNull(contextMap, REQUEST_ID, requestContext.getRequestId());
+            putIfNotNull(contextMap, TRACE_ID, requestContext.getTraceId());
+            putIfNotNull(contextMap, SPAN_ID, requestContext.getSpanId());
+            putIfNotNull(contextMap, USER_ID, requestContext.getUserId());
+            putIfNotNull(contextMap, SESSION_ID, requestContext.getSessionId());
+            putIfNotNull(contextMap, TENANT_ID, requestContext.getTenantId());
+        }
 
         return contextMap;
     }
 
-    private static void addToMapIfPresent(Map<String, String> map, reactor.util.context.ContextView ctx, String key) {
-        ctx.getOrEmpty(key).ifPresent(value -> {
-            if (value instanceof String) {
-                map.put(key, (String) value);
-            }
-        });
+    private static void putIfNotNull(Map<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
     }
 
 }
@@ -0,0 +1,141 @@
+package vn.com.leaselink.commons.trace;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Thông tin của một request, parse một lần từ {@link ServerHttpRequest} và dùng chung
+ * cho logging, metrics và error handling.
+ * <p>
+ * Được lưu dưới một key duy nhất trong Reactor Context ({@link #CONTEXT_KEY})
+ * và một attribute duy nhất trong exchange ({@link #ATTRIBUTE}).
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class RequestContext {
+
+    public static final Class<RequestContext> CONTEXT_KEY = RequestContext.class;
+    public static final String ATTRIBUTE = RequestContext.class.getName();
+
+    public static final String REQUEST_ID_HEADER = "X-Request-ID";
+    public static final String TRACE_ID_HEADER = "X-Trace-ID";
+    public static final String USER_ID_HEADER = "X-User-ID";
+    public static final String SESSION_ID_HEADER = "X-Session-ID";
+    public static final String TENANT_ID_HEADER = "X-Tenant-ID";
+    public static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final String requestId;
+    private final String traceId;
+    private final String spanId;
+    private final String userId;
+    private final String sessionId;
+    private final String tenantId;
+    private final String method;
+    private final String path;
+    private final String clientIp;
+    private final String userAgent;
+
+    /**
+     * {@link System#nanoTime()} lúc bắt đầu request, dùng để đo latency
+     */
+    private final long startNanos;
+
+    /**
+     * Quyết định sampling của logging, tính một lần cho cả request
+     */
+    private final boolean sampled;
+
+    /**
+     * Cờ sampled của server span: trace có được report hay không (khác với sampling của logging)
+     */
+    private final boolean traceSampled;
+
+    /**
+     * Parse các header cần thiết từ request, mỗi header chỉ đọc một lần
+     */
+    public static RequestContext parse(ServerHttpRequest request, String requestId, String traceId,
+                                       String spanId, boolean sampled, boolean traceSampled) {
+        HttpHeaders headers = request.getHeaders();
+        return new RequestContext(
+                requestId,
+                traceId,
+                spanId,
+                headers.getFirst(USER_ID_HEADER),
+                headers.getFirst(SESSION_ID_HEADER),
+                headers.getFirst(TENANT_ID_HEADER),
+                request.getMethod().name(),
+                request.getPath().value(),
+                resolveClientIp(request, headers),
+                headers.getFirst(HttpHeaders.USER_AGENT),
+                System.nanoTime(),
+                sampled,
+                traceSampled);
+    }
+
+    /**
+     * Lấy RequestContext từ Reactor Context, trả về null nếu không có
+     */
+    public static RequestContext fromContext(ContextView contextView) {
+        return contextView.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    /**
+     * @return false nếu request hiện tại không được chọn để log; true nếu không có RequestContext
+     */
+    public static boolean shouldLog(ContextView contextView) {
+        RequestContext requestContext = fromContext(contextView);
+        return requestContext == null || requestContext.sampled;
+    }
+
+    /**
+     * Lấy RequestContext từ exchange attributes, trả về null nếu không có
+     */
+    public static RequestContext fromExchange(ServerWebExchange exchange) {
+        return exchange.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * Thời gian đã trôi qua kể từ khi bắt đầu request, tính bằng nano giây
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Gắn RequestContext vào exchange attributes
+     */
+    public void bindTo(ServerWebExchange exchange) {
+        exchange.getAttributes().put(ATTRIBUTE, this);
+    }
+
+    /**
+     * Ghi RequestContext vào Reactor Context dưới một key duy nhất
+     */
+    public Context writeTo(Context context) {
+        return context.put(CONTEXT_KEY, this);
+    }
+
+    private static String resolveClientIp(ServerHttpRequest request, HttpHeaders headers) {
+        String forwardedFor = headers.getFirst(FORWARDED_FOR_HEADER);
+        if (forwardedFor != null) {
+            int comma = forwardedFor.indexOf(',');
+            return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress != null ? remoteAddress.getHostString() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestContext{requestId=" + requestId + ", traceId=" + traceId + ", spanId=" + spanId
+                + ", method=" + method + ", path=" + path + ", sampled=" + sampled + "}";
+    }
+}
@@ -0,0 +1,61 @@
+package vn.com.leaselink.commons.trace;
+
+import brave.Span;
+import brave.Tracer;
+import io.prometheus.client.exemplars.tracer.common.SpanContextSupplier;
+
+/**
+ * Nguồn traceId cho exemplar của Prometheus registry: span Brave hiện tại nếu có, ngược lại
+ * RequestContext do {@link MdcThreadLocalAccessor} đặt trên thread (filter, callback của reactive chain).
+ * Chỉ trace đã được sample mới trả về ID, exemplar luôn trỏ tới trace có trên Zipkin.
+ */
+public class RequestContextSpanContext implements SpanContextSupplier {
+
+    private final Tracer tracer;
+
+    public RequestContextSpanContext(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public String getTraceId() {
+        Span span = currentSpan();
+        if (span != null) {
+            return isSampled(span) ? span.context().traceIdString() : null;
+        }
+        RequestContext requestContext = sampledRequestContext();
+        return requestContext != null ? requestContext.getTraceId() : null;
+    }
+
+    @Override
+    public String getSpanId() {
+        Span span = currentSpan();
+        if (span != null) {
+            return isSampled(span) ? span.context().spanIdString() : null;
+        }
+        RequestContext requestContext = sampledRequestContext();
+        return requestContext != null ? requestContext.getSpanId() : null;
+    }
+
+    @Override
+    public boolean isSampled() {
+        Span span = currentSpan();
+        if (span != null) {
+            return isSampled(span);
+        }
+        return sampledRequestContext() != null;
+    }
+
+    private static boolean isSampled(Span span) {
+        return Boolean.TRUE.equals(span.context().sampled());
+    }
+
+    private static RequestContext sampledRequestContext() {
+        RequestContext requestContext = MdcThreadLocalAccessor.get().getValue();
+        return requestContext != null && requestContext.isTraceSampled() ? requestContext : null;
+    }
+
+    private Span currentSpan() {
+        return tracer != null ? tracer.currentSpan() : null;
+    }
+}
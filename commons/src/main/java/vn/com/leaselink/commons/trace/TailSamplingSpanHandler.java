@@ -0,0 +1,356 @@
+package vn.com.leaselink.commons.trace;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.AntPathMatcher;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tail sampling: span của trace không được head sample được giữ trong buffer theo trace, quyết định giữ/bỏ
+ * khi local root span kết thúc. Trace được giữ nếu có span lỗi ({@code error} tag hoặc
+ * {@link MutableSpan#error()}, như {@code GlobalErrorHandler} đặt), status 5xx, local root chậm hơn
+ * {@code latencyThreshold}, hoặc route ({@code http.route}, không có thì tên span) khớp {@code keepRoutes}.
+ * <p>
+ * Trace đã được head sample đi thẳng xuống {@code downstream}. Buffer giới hạn theo ước lượng byte
+ * ({@code maxBufferedBytes}, vượt thì bỏ trace cũ nhất) và theo thời gian ({@code decisionWait}, trace
+ * chưa có root kết thúc sau thời gian này bị bỏ bởi thread {@code tail-sampling-expiry}). Span kết thúc sau
+ * khi trace đã có quyết định được xử lý theo quyết định đó nhờ danh sách trace đã quyết định gần đây
+ * ({@code maxDecidedTraces}).
+ * <p>
+ * Trạng thái được chia thành {@value #STRIPES} stripe theo hash của traceId, mỗi stripe có lock, buffer,
+ * danh sách đã quyết định và phần budget byte riêng ({@code maxBufferedBytes / STRIPES}), nên các trace
+ * khác nhau hiếm khi tranh cùng một lock.
+ * <p>
+ * Cần {@code Tracing.Builder#alwaysSampleLocal()} để span không được head sample vẫn được ghi lại, và
+ * {@code downstream} phải report cả span không sampled (ví dụ {@code ZipkinSpanHandler} với
+ * {@code alwaysReportSpans(true)}).
+ * <p>
+ * Metrics: {@code tracing.tail.decisions{decision, reason}}, {@code tracing.tail.evicted{reason}},
+ * {@code tracing.tail.buffered.traces}, {@code tracing.tail.buffered.bytes}.
+ */
+public class TailSamplingSpanHandler extends SpanHandler implements Closeable {
+
+    private static final String ERROR_TAG = "error";
+    private static final String STATUS_TAG = "http.status_code";
+    private static final String ROUTE_TAG = "http.route";
+    private static final int SPAN_OVERHEAD_BYTES = 256;
+    private static final int ENTRY_OVERHEAD_BYTES = 32;
+    private static final int STRIPES = 16;
+    private static final long MIN_EXPIRY_INTERVAL_MILLIS = 10;
+    private static final long MAX_EXPIRY_INTERVAL_MILLIS = 1000;
+
+    private final SpanHandler downstream;
+    private final long latencyThresholdMicros;
+    private final long decisionWaitNanos;
+    private final List<String> keepRoutes;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final ScheduledExecutorService expirer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "tail-sampling-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter keptError;
+    private final Counter keptSlow;
+    private final Counter keptRoute;
+    private final Counter dropped;
+    private final Counter evictedMemory;
+    private final Counter evictedExpired;
+    private final Counter lateDropped;
+
+    public TailSamplingSpanHandler(SpanHandler downstream, long latencyThresholdMillis, long decisionWaitMillis,
+                                   long maxBufferedBytes, int maxDecidedTraces, List<String> keepRoutes,
+                                   MeterRegistry meterRegistry) {
+        this.downstream = downstream;
+        this.latencyThresholdMicros = TimeUnit.MILLISECONDS.toMicros(latencyThresholdMillis);
+        this.decisionWaitNanos = TimeUnit.MILLISECONDS.toNanos(decisionWaitMillis);
+        this.keepRoutes = List.copyOf(keepRoutes);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBufferedBytes / STRIPES, Math.max(1, maxDecidedTraces / STRIPES));
+        }
+
+        this.keptError = decisions(meterRegistry, "kept", "error");
+        this.keptSlow = decisions(meterRegistry, "kept", "slow");
+        this.keptRoute = decisions(meterRegistry, "kept", "route");
+        this.dropped = decisions(meterRegistry, "dropped", "none");
+        this.evictedMemory = evicted(meterRegistry, "memory");
+        this.evictedExpired = evicted(meterRegistry, "expired");
+        this.lateDropped = decisions(meterRegistry, "dropped", "late");
+        Gauge.builder("tracing.tail.buffered.traces", this, TailSamplingSpanHandler::bufferedTraces)
+                .description("Số trace đang chờ quyết định tail sampling")
+                .register(meterRegistry);
+        Gauge.builder("tracing.tail.buffered.bytes", this, TailSamplingSpanHandler::bufferedBytes)
+                .baseUnit("bytes")
+                .description("Ước lượng bộ nhớ của các span đang được buffer")
+                .register(meterRegistry);
+
+        long interval = Math.min(MAX_EXPIRY_INTERVAL_MILLIS,
+                Math.max(MIN_EXPIRY_INTERVAL_MILLIS, decisionWaitMillis / 4));
+        expirer.scheduleWithFixedDelay(this::expire, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String decision, String reason) {
+        return Counter.builder("tracing.tail.decisions")
+                .tag("decision", decision)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Counter evicted(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("tracing.tail.evicted")
+                .tag("reason", reason)
+                .description("Số trace bị bỏ khỏi buffer trước khi có quyết định")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause == Cause.ABANDONED) {
+            return true;
+        }
+        if (Boolean.TRUE.equals(context.sampled())) {
+            return downstream.end(context, span, cause);
+        }
+        TraceKey key = new TraceKey(context.traceIdHigh(), context.traceId());
+        Stripe stripe = stripe(context.traceId());
+        List<Buffered> kept;
+        synchronized (stripe) {
+            Boolean decided = stripe.decidedTraces.get(key);
+            if (decided != null) {
+                if (!decided) {
+                    lateDropped.increment();
+                    return true;
+                }
+                kept = List.of(new Buffered(context, span, cause));
+            } else {
+                TraceBuffer buffer = stripe.traces.get(key);
+                if (!context.isLocalRoot()) {
+                    if (buffer == null) {
+                        buffer = new TraceBuffer(System.nanoTime());
+                        stripe.traces.put(key, buffer);
+                    }
+                    stripe.add(buffer, new Buffered(context, span, cause));
+                    stripe.evictOverBudget();
+                    return true;
+                }
+                if (buffer != null) {
+                    stripe.traces.remove(key);
+                    stripe.bufferedBytes -= buffer.bytes;
+                }
+                Counter reason = keepReason(span, buffer);
+                if (reason == null) {
+                    stripe.decidedTraces.put(key, Boolean.FALSE);
+                    dropped.increment();
+                    return true;
+                }
+                reason.increment();
+                stripe.decidedTraces.put(key, Boolean.TRUE);
+                kept = buffer != null ? buffer.spans : new ArrayList<>(1);
+                kept.add(new Buffered(context, span, cause));
+            }
+        }
+        // Chuyển tiếp ngoài lock, downstream có thể encode / đưa vào queue của reporter
+        for (Buffered buffered : kept) {
+            downstream.end(buffered.context, buffered.span, buffered.cause);
+        }
+        return true;
+    }
+
+    private Stripe stripe(long traceId) {
+        int hash = (int) (traceId ^ (traceId >>> 32));
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private Counter keepReason(MutableSpan root, TraceBuffer buffer) {
+        if (isError(root)) {
+            return keptError;
+        }
+        if (buffer != null) {
+            for (Buffered buffered : buffer.spans) {
+                if (isError(buffered.span)) {
+                    return keptError;
+                }
+            }
+        }
+        long start = root.startTimestamp();
+        long finish = root.finishTimestamp();
+        if (start != 0 && finish != 0 && finish - start >= latencyThresholdMicros) {
+            return keptSlow;
+        }
+        if (!keepRoutes.isEmpty()) {
+            String route = root.tag(ROUTE_TAG);
+            if (route == null) {
+                route = root.name();
+            }
+            if (route != null) {
+                for (String pattern : keepRoutes) {
+                    if (pathMatcher.match(pattern, route)) {
+                        return keptRoute;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isError(MutableSpan span) {
+        if (span.error() != null || span.tag(ERROR_TAG) != null) {
+            return true;
+        }
+        String status = span.tag(STATUS_TAG);
+        return status != null && status.length() == 3 && status.charAt(0) == '5';
+    }
+
+    /**
+     * Bỏ trace chờ quá {@code decisionWait}, chạy định kỳ trên thread {@code tail-sampling-expiry}
+     */
+    void expire() {
+        long now = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.expire(now);
+            }
+        }
+    }
+
+    /**
+     * Ước lượng thô bộ nhớ của một span (String UTF-16, entry của tag/annotation)
+     */
+    static long estimateBytes(MutableSpan span) {
+        long bytes = SPAN_OVERHEAD_BYTES + length(span.name()) * 2L;
+        for (int i = 0; i < span.tagCount(); i++) {
+            bytes += ENTRY_OVERHEAD_BYTES + (length(span.tagKeyAt(i)) + length(span.tagValueAt(i))) * 2L;
+        }
+        for (int i = 0; i < span.annotationCount(); i++) {
+            bytes += ENTRY_OVERHEAD_BYTES + length(span.annotationValueAt(i)) * 2L;
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private double bufferedTraces() {
+        long traces = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                traces += stripe.traces.size();
+            }
+        }
+        return traces;
+    }
+
+    private double bufferedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += stripe.bufferedBytes;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        expirer.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "TailSamplingSpanHandler{" + downstream + "}";
+    }
+
+    private record TraceKey(long traceIdHigh, long traceId) {
+    }
+
+    /**
+     * Một phần trạng thái của handler, truy cập dưới lock của chính stripe
+     */
+    private final class Stripe {
+
+        private final long maxBufferedBytes;
+
+        /**
+         * Trace đang chờ quyết định theo thứ tự span đầu tiên kết thúc
+         */
+        private final LinkedHashMap<TraceKey, TraceBuffer> traces = new LinkedHashMap<>();
+        private final LinkedHashMap<TraceKey, Boolean> decidedTraces;
+        private long bufferedBytes;
+
+        Stripe(long maxBufferedBytes, int maxDecidedTraces) {
+            this.maxBufferedBytes = maxBufferedBytes;
+            this.decidedTraces = new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TraceKey, Boolean> eldest) {
+                    return size() > maxDecidedTraces;
+                }
+            };
+        }
+
+        void add(TraceBuffer buffer, Buffered buffered) {
+            long bytes = estimateBytes(buffered.span);
+            buffer.spans.add(buffered);
+            buffer.bytes += bytes;
+            bufferedBytes += bytes;
+        }
+
+        /**
+         * Bỏ trace cũ nhất cho tới khi buffer của stripe nằm trong budget
+         */
+        void evictOverBudget() {
+            Iterator<TraceBuffer> iterator = traces.values().iterator();
+            while (bufferedBytes > maxBufferedBytes && iterator.hasNext()) {
+                TraceBuffer buffer = iterator.next();
+                iterator.remove();
+                bufferedBytes -= buffer.bytes;
+                evictedMemory.increment();
+            }
+        }
+
+        /**
+         * Map theo thứ tự thêm vào nên chỉ cần xét từ đầu
+         */
+        void expire(long now) {
+            Iterator<TraceBuffer> iterator = traces.values().iterator();
+            while (iterator.hasNext()) {
+                TraceBuffer buffer = iterator.next();
+                if (now - buffer.firstSeenNanos < decisionWaitNanos) {
+                    return;
+                }
+                iterator.remove();
+                bufferedBytes -= buffer.bytes;
+                evictedExpired.increment();
+            }
+        }
+    }
+
+    private record Buffered(TraceContext context, MutableSpan span, Cause cause) {
+    }
+
+    private static final class TraceBuffer {
+
+        private final long firstSeenNanos;
+        private final List<Buffered> spans = new ArrayList<>(4);
+        private long bytes;
+
+        TraceBuffer(long firstSeenNanos) {
+            this.firstSeenNanos = firstSeenNanos;
+        }
+    }
+}
@@ -1,51 +1,134 @@
 package vn.com.leaselink.commons.trace;
 
 import brave.Tracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import brave.Tracing;
+import brave.handler.SpanHandler;
 import brave.propagation.B3Propagation;
-import brave.sampler.Sampler;
-import org.springframework.web.server.WebFilter;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+import vn.com.leaselink.commons.trace.reporter.FileSender;
+import vn.com.leaselink.commons.trace.reporter.InMemorySender;
+import vn.com.leaselink.commons.trace.reporter.MicrometerReporterMetrics;
+import vn.com.leaselink.commons.trace.reporter.SpanReporterLifecycle;
+import vn.com.leaselink.commons.trace.reporter.SpoolingSender;
+import vn.com.leaselink.commons.trace.reporter.TimedSender;
 import zipkin2.Span;
 import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.Sender;
 import zipkin2.reporter.brave.ZipkinSpanHandler;
 import zipkin2.reporter.okhttp3.OkHttpSender;
 
-import static zipkin2.reporter.AsyncReporter.create;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@EnableConfigurationProperties(TracingProperties.class)
 public class TracingConfiguration {
 
     @Bean
-    public Tracing tracing() {
-        OkHttpSender sender = OkHttpSender.create("http://zipkin:9411/api/v2/spans");
-        try (AsyncReporter<Span> reporter = create(sender)) {
-            return Tracing.newBuilder()
-                    .localServiceName("commons")
-                    .propagationFactory(B3Propagation.newFactoryBuilder()
-                            .injectFormat(B3Propagation.Format.SINGLE)
-                            .build())
-                    .addSpanHandler(ZipkinSpanHandler.create(reporter))
-                    .sampler(Sampler.ALWAYS_SAMPLE)
-                    .build();
+    public HttpRequestSampler httpRequestSampler(TracingProperties properties,
+                                                 ObjectProvider<RouteNormalizer> routeNormalizer,
+                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        return new HttpRequestSampler(properties.getSampling(),
+                routeNormalizer.getIfAvailable(RouteNormalizer::new),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean(destroyMethod = "")
+    public Sender spanSender(TracingProperties properties, ObjectProvider<MeterRegistry> meterRegistry)
+            throws IOException {
+        TracingProperties.Reporter reporter = properties.getReporter();
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        return switch (reporter.getSender()) {
+            case HTTP -> spool(reporter.getSpool(), new TimedSender(OkHttpSender.newBuilder()
+                    .endpoint(reporter.getEndpoint())
+                    .messageMaxBytes(reporter.getMessageMaxBytes())
+                    .build(), registry), registry);
+            case MEMORY -> new TimedSender(new InMemorySender(reporter.getMessageMaxBytes(),
+                    reporter.getMemoryRetainedMessages()), registry);
+            case FILE -> new TimedSender(new FileSender(Path.of(reporter.getFile()), reporter.getMessageMaxBytes()),
+                    registry);
+        };
+    }
+
+    private static Sender spool(TracingProperties.Spool spool, Sender sender, MeterRegistry registry)
+            throws IOException {
+        if (!spool.isEnabled()) {
+            return sender;
         }
+        return new SpoolingSender(sender, Path.of(spool.getDirectory()), spool.getSegmentBytes(), spool.getMaxBytes(),
+                Duration.ofMillis(spool.getReplayIntervalMs()), Duration.ofMillis(spool.getMaxBackoffMs()), registry);
     }
 
+    @Bean(destroyMethod = "")
+    public AsyncReporter<Span> spanReporter(TracingProperties properties, Sender spanSender,
+                                            ObjectProvider<MeterRegistry> meterRegistry) {
+        TracingProperties.Reporter reporter = properties.getReporter();
+        return AsyncReporter.builder(spanSender)
+                .queuedMaxSpans(reporter.getQueuedMaxSpans())
+                .queuedMaxBytes(reporter.getQueuedMaxBytes())
+                .messageTimeout(reporter.getFlushIntervalMs(), TimeUnit.MILLISECONDS)
+                .closeTimeout(reporter.getCloseTimeoutMs(), TimeUnit.MILLISECONDS)
+                .metrics(new MicrometerReporterMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry)))
+                .build();
+    }
+
+    /**
+     * Flush và đóng reporter/sender khi shutdown (hai bean trên tắt destroy method suy luận từ close())
+     */
     @Bean
-    public Tracer tracer(Tracing tracing) {
-        return tracing.tracer();
+    public SpanReporterLifecycle spanReporterLifecycle(AsyncReporter<Span> spanReporter, Sender spanSender) {
+        return new SpanReporterLifecycle(spanReporter, spanSender);
     }
 
     @Bean
-    public WebFilter tracingFilter(Tracer tracer) {
-        return (exchange, chain) -> {
-            String traceId = tracer.currentSpan().context().traceIdString();
+    public Tracing tracing(TracingProperties properties, HttpRequestSampler httpRequestSampler,
+                           AsyncReporter<Span> spanReporter,
+                           ObjectProvider<TailSamplingSpanHandler> tailSamplingSpanHandler) {
+        Tracing.Builder builder = Tracing.newBuilder()
+                .localServiceName(properties.getServiceName())
+                .propagationFactory(B3Propagation.newFactoryBuilder()
+                        .injectFormat(B3Propagation.Format.SINGLE)
+                        .build())
+                .sampler(httpRequestSampler);
+        TailSamplingSpanHandler tail = tailSamplingSpanHandler.getIfAvailable();
+        if (tail == null) {
+            return builder.addSpanHandler(ZipkinSpanHandler.create(spanReporter)).build();
+        }
+        // Span không được head sample vẫn được ghi cục bộ, tail handler quyết định span nào được report
+        return builder
+                .alwaysSampleLocal()
+                .addSpanHandler(tail)
+                .build();
+    }
 
-            return chain.filter(exchange)
-                    .contextWrite(context -> context.put("traceId", traceId));
-        };
+    /**
+     * Chỉ khi bật {@code tracing.tail.enabled}; là bean riêng để close() dừng thread expiry khi shutdown
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "tracing.tail", name = "enabled", havingValue = "true")
+    public TailSamplingSpanHandler tailSamplingSpanHandler(TracingProperties properties,
+                                                           AsyncReporter<Span> spanReporter,
+                                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        TracingProperties.TailSampling tail = properties.getTail();
+        SpanHandler zipkin = ZipkinSpanHandler.newBuilder(spanReporter).alwaysReportSpans(true).build();
+        return new TailSamplingSpanHandler(zipkin, tail.getLatencyThresholdMs(), tail.getDecisionWaitMs(),
+                tail.getMaxBufferedBytes(), tail.getMaxDecidedTraces(), tail.getKeepRoutes(),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean
+    public Tracer tracer(Tracing tracing) {
+        return tracing.tracer();
     }
 
 }
@@ -0,0 +1,189 @@
+package vn.com.leaselink.commons.trace;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@ConfigurationProperties(prefix = "tracing")
+public class TracingProperties {
+
+    /**
+     * Tên service ghi trên span
+     */
+    @Setter
+    private String serviceName = "commons";
+
+    private final Sampling sampling = new Sampling();
+    private final Reporter reporter = new Reporter();
+    private final TailSampling tail = new TailSampling();
+
+    /**
+     * Configuration cho sampling head-based
+     */
+    @Getter
+    @Setter
+    public static class Sampling {
+
+        /**
+         * Số trace tối đa được sample mỗi giây (áp dụng sau rule), <= 0 = không giới hạn
+         */
+        private int tracesPerSecond = 100;
+
+        /**
+         * Xác suất sample cho route không khớp rule nào
+         */
+        private float probability = 1.0f;
+
+        /**
+         * Theo quyết định sampling của upstream (B3 / traceparent) khi có; false = luôn quyết định lại theo rule
+         */
+        private boolean respectUpstream = true;
+
+        /**
+         * Header ép sample request (bỏ qua rule và rate limit), để trống = tắt
+         */
+        private String debugHeader = "X-Debug-Trace";
+
+        /**
+         * Rule theo route đã chuẩn hoá, rule đầu tiên khớp được áp dụng
+         */
+        private List<Rule> rules = new ArrayList<>();
+    }
+
+    /**
+     * Configuration cho việc gửi span
+     */
+    @Getter
+    @Setter
+    public static class Reporter {
+
+        /**
+         * http: gửi tới Zipkin collector, memory: chỉ đếm (load-test), file: ghi JSON vào {@code file}
+         */
+        private SenderType sender = SenderType.HTTP;
+
+        private String endpoint = "http://zipkin:9411/api/v2/spans";
+
+        private String file = "logs/spans.json";
+
+        /**
+         * Kích thước tối đa của một batch gửi đi
+         */
+        private int messageMaxBytes = 500_000;
+
+        /**
+         * Số span / số byte tối đa đang chờ gửi, vượt quá thì span mới bị bỏ (đếm ở tracing.reporter.spans.dropped)
+         */
+        private int queuedMaxSpans = 10_000;
+        private int queuedMaxBytes = 8 * 1024 * 1024;
+
+        /**
+         * Thời gian tối đa một span nằm trong queue trước khi batch được gửi
+         */
+        private long flushIntervalMs = 1000;
+
+        /**
+         * Thời gian chờ flush khi shutdown
+         */
+        private long closeTimeoutMs = 5000;
+
+        /**
+         * Số batch được giữ lại với sender memory
+         */
+        private int memoryRetainedMessages = 0;
+
+        private final Spool spool = new Spool();
+    }
+
+    /**
+     * Spool trên đĩa cho batch gửi lỗi khi collector không truy cập được (chỉ áp dụng cho sender http)
+     */
+    @Getter
+    @Setter
+    public static class Spool {
+
+        private boolean enabled = false;
+
+        private String directory = "spool/spans";
+
+        /**
+         * Kích thước mỗi segment file, một batch phải vừa một segment
+         */
+        private int segmentBytes = 8 * 1024 * 1024;
+
+        /**
+         * Tổng dung lượng tối đa của spool trên đĩa
+         */
+        private long maxBytes = 256L * 1024 * 1024;
+
+        /**
+         * Chu kỳ gửi lại, khi collector vẫn lỗi thì tăng gấp đôi tới {@code maxBackoffMs}
+         */
+        private long replayIntervalMs = 5000;
+        private long maxBackoffMs = 60000;
+    }
+
+    /**
+     * Tail sampling: giữ thêm trace lỗi / chậm / theo route trong số trace không được head sample.
+     * Bật lên thì mọi span đều được ghi lại cục bộ để chờ quyết định.
+     */
+    @Getter
+    @Setter
+    public static class TailSampling {
+
+        private boolean enabled = false;
+
+        /**
+         * Local root chậm hơn ngưỡng này thì trace được giữ
+         */
+        private long latencyThresholdMs = 1000;
+
+        /**
+         * Pattern route (tag http.route hoặc tên span) luôn được giữ
+         */
+        private List<String> keepRoutes = new ArrayList<>();
+
+        /**
+         * Thời gian tối đa một trace chờ local root kết thúc
+         */
+        private long decisionWaitMs = 30000;
+
+        /**
+         * Giới hạn bộ nhớ (ước lượng) của các span đang buffer
+         */
+        private long maxBufferedBytes = 32L * 1024 * 1024;
+
+        /**
+         * Số trace đã quyết định được nhớ để xử lý span kết thúc muộn
+         */
+        private int maxDecidedTraces = 10_000;
+    }
+
+    public enum SenderType {
+        HTTP, MEMORY, FILE
+    }
+
+    /**
+     * Rule sample theo route, ví dụ {@code /actuator/**} với probability 0
+     */
+    @Getter
+    @Setter
+    public static class Rule {
+
+        /**
+         * Pattern dạng Ant trên route đã chuẩn hoá ({@code /api/loans/{id}}, {@code /actuator/**})
+         */
+        private String path;
+
+        /**
+         * HTTP method, để trống = mọi method
+         */
+        private String method;
+
+        private float probability = 1.0f;
+    }
+}
@@ -0,0 +1,124 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.BytesMessageEncoder;
+import zipkin2.reporter.Sender;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Ghi mỗi batch span thành một dòng JSON array vào file, để load-test hoặc chạy local không có collector
+ */
+public class FileSender extends Sender {
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private final Path path;
+    private final int messageMaxBytes;
+    private final FileChannel channel;
+    private volatile boolean closed;
+
+    public FileSender(Path path, int messageMaxBytes) throws IOException {
+        this.path = path;
+        this.messageMaxBytes = messageMaxBytes;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return messageMaxBytes;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+        return encoding().listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        return new WriteCall(BytesMessageEncoder.JSON.encode(encodedSpans));
+    }
+
+    @Override
+    public CheckResult check() {
+        return channel.isOpen() ? CheckResult.OK : CheckResult.failed(new IOException(path + " is closed"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (channel) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileSender{" + path + "}";
+    }
+
+    private void write(byte[] message) throws IOException {
+        synchronized (channel) {
+            ByteBuffer[] buffers = {ByteBuffer.wrap(message), ByteBuffer.wrap(NEW_LINE)};
+            while (buffers[1].hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+
+    private final class WriteCall extends Call.Base<Void> {
+
+        private final byte[] message;
+
+        WriteCall(byte[] message) {
+            this.message = message;
+        }
+
+        @Override
+        protected Void doExecute() throws IOException {
+            write(message);
+            return null;
+        }
+
+        @Override
+        protected void doEnqueue(Callback<Void> callback) {
+            try {
+                write(message);
+                callback.onSuccess(null);
+            } catch (IOException | RuntimeException e) {
+                callback.onError(e);
+            }
+        }
+
+        @Override
+        public Call<Void> clone() {
+            return new WriteCall(message);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import zipkin2.Call;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sender không cần collector, dùng để load-test pipeline report: đếm message/span/byte và giữ lại
+ * {@code retainedMessages} batch gần nhất (0 = không giữ)
+ */
+public class InMemorySender extends Sender {
+
+    private final int messageMaxBytes;
+    private final int retainedMessages;
+    private final ArrayDeque<List<byte[]>> messages = new ArrayDeque<>();
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong spanCount = new AtomicLong();
+    private final AtomicLong byteCount = new AtomicLong();
+
+    public InMemorySender(int messageMaxBytes, int retainedMessages) {
+        this.messageMaxBytes = messageMaxBytes;
+        this.retainedMessages = retainedMessages;
+    }
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return messageMaxBytes;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+        return encoding().listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+        messageCount.incrementAndGet();
+        spanCount.addAndGet(encodedSpans.size());
+        byteCount.addAndGet(messageSizeInBytes(encodedSpans));
+        if (retainedMessages > 0) {
+            synchronized (messages) {
+                if (messages.size() >= retainedMessages) {
+                    messages.pollFirst();
+                }
+                messages.addLast(encodedSpans);
+            }
+        }
+        return Call.create(null);
+    }
+
+    @Override
+    public CheckResult check() {
+        return CheckResult.OK;
+    }
+
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    public long getSpanCount() {
+        return spanCount.get();
+    }
+
+    public long getByteCount() {
+        return byteCount.get();
+    }
+
+    /**
+     * Các batch đang được giữ lại, cũ nhất trước
+     */
+    public List<List<byte[]>> getMessages() {
+        synchronized (messages) {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InMemorySender";
+    }
+}
@@ -0,0 +1,94 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import zipkin2.reporter.ReporterMetrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ReporterMetrics} của AsyncReporter đưa lên MeterRegistry:
+ * <ul>
+ *     <li>{@code tracing.reporter.spans}, {@code tracing.reporter.spans.dropped}: span nhận vào / bị bỏ
+ *     (queue đầy, span quá lớn, gửi lỗi)</li>
+ *     <li>{@code tracing.reporter.messages}, {@code tracing.reporter.messages.dropped{exception}}: batch đã gửi / lỗi</li>
+ *     <li>{@code tracing.reporter.queued.spans}, {@code tracing.reporter.queued.bytes}: đang chờ trong queue</li>
+ * </ul>
+ */
+public class MicrometerReporterMetrics implements ReporterMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter messages;
+    private final Counter messageBytes;
+    private final Counter spans;
+    private final Counter spanBytes;
+    private final Counter spansDropped;
+    private final AtomicInteger queuedSpans = new AtomicInteger();
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+
+    public MicrometerReporterMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.messages = Counter.builder("tracing.reporter.messages")
+                .description("Số batch span đã gửi")
+                .register(meterRegistry);
+        this.messageBytes = Counter.builder("tracing.reporter.message.bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.spans = Counter.builder("tracing.reporter.spans")
+                .description("Số span được report")
+                .register(meterRegistry);
+        this.spanBytes = Counter.builder("tracing.reporter.span.bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.spansDropped = Counter.builder("tracing.reporter.spans.dropped")
+                .description("Số span bị bỏ do queue đầy, span quá lớn hoặc gửi lỗi")
+                .register(meterRegistry);
+        Gauge.builder("tracing.reporter.queued.spans", queuedSpans, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("tracing.reporter.queued.bytes", queuedBytes, AtomicInteger::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void incrementMessages() {
+        messages.increment();
+    }
+
+    @Override
+    public void incrementMessagesDropped(Throwable cause) {
+        meterRegistry.counter("tracing.reporter.messages.dropped", "exception", cause.getClass().getSimpleName())
+                .increment();
+    }
+
+    @Override
+    public void incrementSpans(int quantity) {
+        spans.increment(quantity);
+    }
+
+    @Override
+    public void incrementSpanBytes(int quantity) {
+        spanBytes.increment(quantity);
+    }
+
+    @Override
+    public void incrementMessageBytes(int quantity) {
+        messageBytes.increment(quantity);
+    }
+
+    @Override
+    public void incrementSpansDropped(int quantity) {
+        spansDropped.increment(quantity);
+    }
+
+    @Override
+    public void updateQueuedSpans(int update) {
+        queuedSpans.set(update);
+    }
+
+    @Override
+    public void updateQueuedBytes(int update) {
+        queuedBytes.set(update);
+    }
+}
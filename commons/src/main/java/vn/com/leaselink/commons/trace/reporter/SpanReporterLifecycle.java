@@ -0,0 +1,62 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import zipkin2.Span;
+import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.Sender;
+
+import java.io.IOException;
+
+/**
+ * Quản lý vòng đời của {@link AsyncReporter} và {@link Sender}: khi shutdown flush các span còn trong
+ * queue rồi mới đóng reporter và sender.
+ * <p>
+ * Phase thấp nhất nên được stop sau web server (graceful shutdown), span của các request cuối vẫn được gửi.
+ */
+@Slf4j
+public class SpanReporterLifecycle implements SmartLifecycle {
+
+    private final AsyncReporter<Span> reporter;
+    private final Sender sender;
+    private volatile boolean running;
+
+    public SpanReporterLifecycle(AsyncReporter<Span> reporter, Sender sender) {
+        this.reporter = reporter;
+        this.sender = sender;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            reporter.flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush spans on shutdown", e);
+        }
+        reporter.close();
+        try {
+            sender.close();
+        } catch (IOException e) {
+            log.warn("Failed to close span sender {}", sender, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+}
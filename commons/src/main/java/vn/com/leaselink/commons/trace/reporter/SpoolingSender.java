@@ -0,0 +1,455 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bọc {@link Sender} của collector: batch gửi lỗi được ghi xuống spool trên đĩa thay vì bị bỏ, một replayer
+ * chạy nền gửi lại khi collector hoạt động trở lại.
+ * <p>
+ * Spool là các segment file kích thước cố định ({@code spool-<seq>.seg}) được memory-map, tổng dung lượng
+ * không vượt {@code maxBytes}; spool đầy thì batch bị trả lỗi như khi không có spool (reporter đếm là dropped).
+ * Khi spool còn dữ liệu chưa gửi lại, batch mới cũng được ghi vào spool để giữ thứ tự và không dồn request
+ * vào collector vừa hồi phục. Vị trí đọc/ghi nằm trong header của segment nên dữ liệu còn lại sau restart.
+ * <p>
+ * Segment: header {@code [magic][writePos][readPos][reserved]}, sau đó là các record
+ * {@code [length][epochMillis][spanCount]([spanLength][span])*}.
+ * <p>
+ * Metrics: {@code tracing.spool.bytes} (dung lượng trên đĩa), {@code tracing.spool.pending.bytes},
+ * {@code tracing.spool.lag} (tuổi của batch cũ nhất chưa gửi lại, giây), {@code tracing.spool.batches{result}}.
+ */
+@Slf4j
+public class SpoolingSender extends Sender {
+
+    private static final String PREFIX = "spool-";
+    private static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x5a53504c;
+    private static final int HEADER_BYTES = 16;
+    private static final int WRITE_POS = 4;
+    private static final int READ_POS = 8;
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4;
+
+    private final Sender delegate;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final long replayIntervalMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Segment từ cũ tới mới, segment cuối là segment đang ghi; truy cập dưới lock {@code this}
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long backoffMillis;
+    private volatile boolean closed;
+
+    private final ScheduledExecutorService replayer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "span-spool-replayer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter sent;
+    private final Counter spooled;
+    private final Counter replayed;
+    private final Counter rejected;
+
+    public SpoolingSender(Sender delegate, Path directory, int segmentBytes, long maxBytes,
+                          Duration replayInterval, Duration maxBackoff, MeterRegistry meterRegistry) throws IOException {
+        if (segmentBytes <= HEADER_BYTES + RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("segmentBytes too small: " + segmentBytes);
+        }
+        this.delegate = delegate;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(1, maxBytes / segmentBytes);
+        this.replayIntervalMillis = Math.max(1, replayInterval.toMillis());
+        this.maxBackoffMillis = Math.max(replayIntervalMillis, maxBackoff.toMillis());
+        this.backoffMillis = replayIntervalMillis;
+
+        Files.createDirectories(directory);
+        recover();
+
+        this.sent = batches(meterRegistry, "sent");
+        this.spooled = batches(meterRegistry, "spooled");
+        this.replayed = batches(meterRegistry, "replayed");
+        this.rejected = batches(meterRegistry, "rejected");
+        Gauge.builder("tracing.spool.bytes", this, SpoolingSender::bytesOnDisk)
+                .baseUnit("bytes")
+                .description("Dung lượng các segment spool trên đĩa")
+                .register(meterRegistry);
+        Gauge.builder("tracing.spool.pending.bytes", this, SpoolingSender::pendingBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("tracing.spool.lag", this, SpoolingSender::lagSeconds)
+                .baseUnit("seconds")
+                .description("Tuổi của batch cũ nhất chưa được gửi lại")
+                .register(meterRegistry);
+
+        replayer.schedule(this::replay, replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter batches(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("tracing.spool.batches")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return delegate.encoding();
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return delegate.messageMaxBytes();
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+        return delegate.messageSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public int messageSizeInBytes(int encodedSizeInBytes) {
+        return delegate.messageSizeInBytes(encodedSizeInBytes);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        return new SpoolingCall(encodedSpans);
+    }
+
+    @Override
+    public CheckResult check() {
+        return delegate.check();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        replayer.shutdownNow();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+        }
+        delegate.close();
+    }
+
+    @Override
+    public String toString() {
+        return "SpoolingSender{" + delegate + ", " + directory + "}";
+    }
+
+    private void send(List<byte[]> encodedSpans) throws IOException {
+        if (!hasPending()) {
+            try {
+                delegate.sendSpans(encodedSpans).execute();
+                sent.increment();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.debug("Span collector unavailable, spooling batch", e);
+                if (!append(encodedSpans)) {
+                    throw e;
+                }
+                return;
+            }
+        }
+        if (!append(encodedSpans)) {
+            throw new IOException("Span spool is full");
+        }
+    }
+
+    private synchronized boolean hasPending() {
+        for (Segment segment : segments) {
+            if (segment.readPos() < segment.writePos()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ghi batch vào segment cuối, hết chỗ thì mở segment mới nếu còn trong giới hạn
+     */
+    private synchronized boolean append(List<byte[]> encodedSpans) {
+        int length = RECORD_HEADER_BYTES;
+        for (byte[] span : encodedSpans) {
+            length += 4 + span.length;
+        }
+        if (length > segmentBytes - HEADER_BYTES) {
+            rejected.increment();
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePos() + length > segmentBytes) {
+            if (segments.size() >= maxSegments) {
+                rejected.increment();
+                return false;
+            }
+            try {
+                tail = Segment.create(directory.resolve(PREFIX + nextSequence++ + SUFFIX), segmentBytes);
+            } catch (IOException e) {
+                log.warn("Failed to create span spool segment in {}", directory, e);
+                rejected.increment();
+                return false;
+            }
+            segments.addLast(tail);
+        }
+        MappedByteBuffer buffer = tail.buffer;
+        int position = tail.writePos();
+        buffer.putInt(position, length);
+        buffer.putLong(position + 4, System.currentTimeMillis());
+        buffer.putInt(position + 12, encodedSpans.size());
+        position += RECORD_HEADER_BYTES;
+        for (byte[] span : encodedSpans) {
+            buffer.putInt(position, span.length);
+            buffer.put(position + 4, span);
+            position += 4 + span.length;
+        }
+        // writePos cập nhật sau cùng, record chỉ hiện ra với replayer khi đã ghi đủ
+        buffer.putInt(WRITE_POS, position);
+        spooled.increment();
+        return true;
+    }
+
+    private void replay() {
+        if (closed) {
+            return;
+        }
+        long delay = replayIntervalMillis;
+        try {
+            while (!closed) {
+                List<byte[]> batch = peek();
+                if (batch == null) {
+                    break;
+                }
+                delegate.sendSpans(batch).execute();
+                commit();
+                replayed.increment();
+            }
+            backoffMillis = replayIntervalMillis;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Span spool replay failed, retrying in {}ms", backoffMillis, e);
+            delay = backoffMillis;
+            backoffMillis = Math.min(maxBackoffMillis, backoffMillis * 2);
+        } finally {
+            if (!closed) {
+                replayer.schedule(this::replay, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Batch cũ nhất chưa gửi lại, null nếu spool trống. Segment đã đọc hết (trừ segment đang ghi) bị xoá.
+     */
+    private synchronized List<byte[]> peek() {
+        while (!segments.isEmpty()) {
+            Segment head = segments.peekFirst();
+            int readPos = head.readPos();
+            if (readPos < head.writePos()) {
+                MappedByteBuffer buffer = head.buffer;
+                int count = buffer.getInt(readPos + 12);
+                List<byte[]> batch = new ArrayList<>(count);
+                int position = readPos + RECORD_HEADER_BYTES;
+                for (int i = 0; i < count; i++) {
+                    byte[] span = new byte[buffer.getInt(position)];
+                    buffer.get(position + 4, span);
+                    batch.add(span);
+                    position += 4 + span.length;
+                }
+                return batch;
+            }
+            if (segments.size() == 1) {
+                return null;
+            }
+            segments.pollFirst();
+            head.delete();
+        }
+        return null;
+    }
+
+    private synchronized void commit() {
+        Segment head = segments.peekFirst();
+        if (head != null) {
+            int readPos = head.readPos();
+            head.buffer.putInt(READ_POS, readPos + head.buffer.getInt(readPos));
+        }
+    }
+
+    private synchronized double bytesOnDisk() {
+        return (double) segments.size() * segmentBytes;
+    }
+
+    private synchronized double pendingBytes() {
+        long pending = 0;
+        for (Segment segment : segments) {
+            pending += segment.writePos() - segment.readPos();
+        }
+        return pending;
+    }
+
+    private synchronized double lagSeconds() {
+        for (Segment segment : segments) {
+            int readPos = segment.readPos();
+            if (readPos < segment.writePos()) {
+                long epochMillis = segment.buffer.getLong(readPos + 4);
+                return Math.max(0, System.currentTimeMillis() - epochMillis) / 1000.0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Nạp lại các segment còn trên đĩa từ lần chạy trước, bỏ file hỏng hoặc khác kích thước
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(SpoolingSender::sequence));
+        for (Path file : files) {
+            long sequence = sequence(file);
+            if (sequence < 0 || Files.size(file) != segmentBytes) {
+                log.warn("Ignoring span spool file {}", file);
+                continue;
+            }
+            Segment segment = Segment.open(file, segmentBytes);
+            if (segment.buffer.getInt(0) != MAGIC || segment.writePos() > segmentBytes
+                    || segment.readPos() > segment.writePos()) {
+                log.warn("Deleting corrupted span spool segment {}", file);
+                segment.delete();
+                continue;
+            }
+            segments.addLast(segment);
+            nextSequence = sequence + 1;
+        }
+        if (!segments.isEmpty()) {
+            log.info("Recovered {} span spool segment(s) from {}", segments.size(), directory);
+        }
+    }
+
+    private static long sequence(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Một segment file đã được map vào bộ nhớ
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, int segmentBytes) throws IOException {
+            Segment segment = map(path, segmentBytes, StandardOpenOption.CREATE_NEW);
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putInt(WRITE_POS, HEADER_BYTES);
+            segment.buffer.putInt(READ_POS, HEADER_BYTES);
+            return segment;
+        }
+
+        static Segment open(Path path, int segmentBytes) throws IOException {
+            return map(path, segmentBytes, StandardOpenOption.READ);
+        }
+
+        private static Segment map(Path path, int segmentBytes, StandardOpenOption option) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, option, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // mapping vẫn dùng được sau khi đóng channel
+                return new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            }
+        }
+
+        int writePos() {
+            return buffer.getInt(WRITE_POS);
+        }
+
+        int readPos() {
+            return buffer.getInt(READ_POS);
+        }
+
+        /**
+         * Xoá file; vùng map được giải phóng khi buffer bị GC
+         */
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete span spool segment {}", path, e);
+            }
+        }
+    }
+
+    private final class SpoolingCall extends Call.Base<Void> {
+
+        private final List<byte[]> encodedSpans;
+
+        SpoolingCall(List<byte[]> encodedSpans) {
+            this.encodedSpans = encodedSpans;
+        }
+
+        @Override
+        protected Void doExecute() throws IOException {
+            send(encodedSpans);
+            return null;
+        }
+
+        @Override
+        protected void doEnqueue(Callback<Void> callback) {
+            try {
+                send(encodedSpans);
+                callback.onSuccess(null);
+            } catch (IOException | RuntimeException e) {
+                callback.onError(e);
+            }
+        }
+
+        @Override
+        public Call<Void> clone() {
+            return new SpoolingCall(encodedSpans);
+        }
+    }
+}
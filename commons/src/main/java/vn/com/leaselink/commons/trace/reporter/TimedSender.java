@@ -0,0 +1,126 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bọc {@link Sender} để đo thời gian gửi một batch: {@code tracing.reporter.send{outcome}}
+ */
+public class TimedSender extends Sender {
+
+    private final Sender delegate;
+    private final Timer success;
+    private final Timer error;
+
+    public TimedSender(Sender delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.success = timer(meterRegistry, "success");
+        this.error = timer(meterRegistry, "error");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("tracing.reporter.send")
+                .tag("outcome", outcome)
+                .description("Thời gian gửi một batch span tới collector")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return delegate.encoding();
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return delegate.messageMaxBytes();
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+        return delegate.messageSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public int messageSizeInBytes(int encodedSizeInBytes) {
+        return delegate.messageSizeInBytes(encodedSizeInBytes);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+        return new TimedCall(delegate.sendSpans(encodedSpans));
+    }
+
+    @Override
+    public CheckResult check() {
+        return delegate.check();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public String toString() {
+        return "Timed(" + delegate + ")";
+    }
+
+    private final class TimedCall extends Call.Base<Void> {
+
+        private final Call<Void> call;
+
+        TimedCall(Call<Void> call) {
+            this.call = call;
+        }
+
+        @Override
+        protected Void doExecute() throws IOException {
+            long startNanos = System.nanoTime();
+            try {
+                call.execute();
+                success.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                return null;
+            } catch (IOException | RuntimeException | Error e) {
+                error.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+        }
+
+        @Override
+        protected void doEnqueue(Callback<Void> callback) {
+            long startNanos = System.nanoTime();
+            call.enqueue(new Callback<>() {
+                @Override
+                public void onSuccess(Void value) {
+                    success.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                    callback.onSuccess(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    error.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                    callback.onError(t);
+                }
+            });
+        }
+
+        @Override
+        protected void doCancel() {
+            call.cancel();
+        }
+
+        @Override
+        public Call<Void> clone() {
+            return new TimedCall(call.clone());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package vn.com.leaselink.commons.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import vn.com.leaselink.commons.log.LoggingProperties;
+import vn.com.leaselink.commons.trace.MdcThreadLocalAccessor;
+import vn.com.leaselink.commons.trace.RequestContext;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Chi phí đưa MDC theo một Flux 1000 phần tử có chuyển thread:
+ * cách cũ (doOnEach copy map vào MDC ở mỗi signal + MDC.clear) với MdcThreadLocalAccessor
+ * được Reactor gọi qua automatic context propagation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextPropagationBenchmark {
+
+    private static final int ELEMENTS = 1000;
+
+    @Param({"legacy", "accessor"})
+    private String mode;
+
+    private Scheduler scheduler;
+    private Context context;
+    private Function<Flux<Integer>, Flux<Integer>> transformer;
+
+    @Setup
+    public void setup() {
+        scheduler = Schedulers.newSingle("bench");
+        RequestContext requestContext = RequestContext.parse(
+                MockServerHttpRequest.get("/api/v1/contracts/42")
+                        .header(RequestContext.USER_ID_HEADER, "user-1")
+                        .header(RequestContext.TENANT_ID_HEADER, "tenant-1")
+                        .remoteAddress(new InetSocketAddress("10.0.0.1", 8080))
+                        .build(),
+                "0ABCDEFGHJKMN", "463ac35c9f6413ad", "a2fb4a1d1a96d312", true, true);
+        context = requestContext.writeTo(Context.empty());
+
+        if ("accessor".equals(mode)) {
+            MdcThreadLocalAccessor.register(new LoggingProperties.MdcKeys());
+            Hooks.enableAutomaticContextPropagation();
+            transformer = Function.identity();
+        } else {
+            Hooks.disableAutomaticContextPropagation();
+            transformer = ContextPropagationBenchmark::legacyWithMdc;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Hooks.disableAutomaticContextPropagation();
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public Integer propagate(Blackhole blackhole) {
+        return Flux.range(0, ELEMENTS)
+                .publishOn(scheduler)
+                .transform(transformer)
+                .doOnNext(i -> blackhole.consume(MDC.get("traceId")))
+                .contextWrite(context)
+                .blockLast();
+    }
+
+    /**
+     * Bản sao ReactiveContextPropagation.withMdc trước đây
+     */
+    private static Flux<Integer> legacyWithMdc(Flux<Integer> flux) {
+        return flux
+                .doOnEach(signal -> {
+                    if (signal.isOnNext() || signal.isOnError()) {
+                        RequestContext requestContext = RequestContext.fromContext(signal.getContextView());
+                        Map<String, String> contextMap = new HashMap<>();
+                        contextMap.put("requestId", requestContext.getRequestId());
+                        contextMap.put("traceId", requestContext.getTraceId());
+                        contextMap.put("spanId", requestContext.getSpanId());
+                        contextMap.put("userId", requestContext.getUserId());
+                        contextMap.put("tenantId", requestContext.getTenantId());
+                        contextMap.put("method", requestContext.getMethod());
+                        contextMap.put("path", requestContext.getPath());
+                        contextMap.forEach(MDC::put);
+                    }
+                })
+                .doFinally(signalType -> MDC.clear());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContextPropagationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package vn.com.leaselink.commons.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.publisher.Flux;
+import vn.com.leaselink.commons.metrics.LatencyHistograms;
+import vn.com.leaselink.commons.metrics.PoolTelemetryRegistry;
+import vn.com.leaselink.commons.metrics.ReactiveMetricsRecorder;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Chi phí đo một Flux 1000 phần tử: chuỗi doOnSubscribe/doOnNext/doOnComplete tự viết
+ * với recordFluxOperation (một operator tap).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FluxOperationBenchmark {
+
+    private static final int ELEMENTS = 1000;
+
+    private Flux<Integer> source;
+    private Timer timer;
+    private Function<Flux<Integer>, Flux<Integer>> tapped;
+
+    @Setup
+    public void setup() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ReactiveMetricsRecorder recorder = new ReactiveMetricsRecorder(registry, ObservationRegistry.NOOP,
+                new RouteNormalizer(), new LatencyHistograms(256),
+                new PoolTelemetryRegistry(registry, Duration.ofMillis(500)));
+        source = Flux.range(0, ELEMENTS);
+        timer = registry.timer("operation.duration", "operation", "stream", "outcome", "success");
+        tapped = recorder.recordFluxOperation("stream");
+    }
+
+    @Benchmark
+    public Long doOnChain() {
+        AtomicLong startNanos = new AtomicLong();
+        AtomicLong elements = new AtomicLong();
+        return source
+                .doOnSubscribe(subscription -> startNanos.set(System.nanoTime()))
+                .doOnNext(value -> elements.incrementAndGet())
+                .doOnComplete(() -> timer.record(System.nanoTime() - startNanos.get(), TimeUnit.NANOSECONDS))
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long recordFluxOperation() {
+        return source.transform(tapped).count().block();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FluxOperationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package vn.com.leaselink.commons.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.log.JsonLogEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh throughput và allocation mỗi event: PatternLayout với JSON_PATTERN cũ và JsonLogEncoder,
+ * có và không có stack trace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonLogEncoderBenchmark {
+
+    /**
+     * JSON_PATTERN trước đây trong logback.xml
+     */
+    private static final String JSON_PATTERN = "{\"@timestamp\":\"%d{yyyy-MM-dd'T'HH:mm:ss.SSSZ}\",\"level\":\"%level\","
+            + "\"thread\":\"%thread\",\"logger\":\"%logger\",\"message\":\"%message\",\"app_name\":\"commons\","
+            + "\"environment\":\"production\",\"host_name\":\"node-1\",\"trace_id\":\"%X{traceId:-NO_TRACE}\","
+            + "\"span_id\":\"%X{spanId:-NO_SPAN}\",\"request_id\":\"%X{requestId:-NO_REQ}\",\"user_id\":\"%X{userId:-}\","
+            + "\"tenant_id\":\"%X{tenantId:-}\",\"operation\":\"%X{operation:-}\","
+            + "\"exception\":\"%replace(%exception){'\\n','\\\\n'}\"}%n";
+
+    @Param({"false", "true"})
+    private boolean withException;
+
+    private LayoutWrappingEncoder<ILoggingEvent> patternEncoder;
+    private JsonLogEncoder jsonEncoder;
+    private LoggingEvent event;
+
+    @Setup
+    public void setup() {
+        LoggerContext context = new LoggerContext();
+
+        PatternLayout layout = new PatternLayout();
+        layout.setContext(context);
+        layout.setPattern(JSON_PATTERN);
+        layout.start();
+        patternEncoder = new LayoutWrappingEncoder<>();
+        patternEncoder.setContext(context);
+        patternEncoder.setLayout(layout);
+        patternEncoder.start();
+
+        jsonEncoder = new JsonLogEncoder();
+        jsonEncoder.setContext(context);
+        jsonEncoder.setAppName("commons");
+        jsonEncoder.setEnvironment("production");
+        jsonEncoder.setHostName("node-1");
+        jsonEncoder.start();
+
+        context.getMDCAdapter().put("traceId", "463ac35c9f6413ad");
+        context.getMDCAdapter().put("spanId", "a2fb4a1d1a96d312");
+        context.getMDCAdapter().put("requestId", "0ABCDEFGHJKMN");
+        context.getMDCAdapter().put("userId", "user-1");
+        context.getMDCAdapter().put("tenantId", "tenant-1");
+
+        Logger logger = context.getLogger("vn.com.leaselink.commons.filter.ReactiveLoggingFilter");
+        Throwable error = withException
+                ? new IllegalStateException("Contract \"HD-2025-42\" not found", new RuntimeException("db timeout"))
+                : null;
+        event = new LoggingEvent(Logger.class.getName(), logger, Level.INFO,
+                "Response: {} {} - Status: {} - Duration: {}ms", error,
+                new Object[] {"GET", "/api/v1/contracts/42", 200, 12});
+        event.prepareForDeferredProcessing();
+        context.getMDCAdapter().clear();
+    }
+
+    @Benchmark
+    public byte[] patternLayout() {
+        return patternEncoder.encode(event);
+    }
+
+    @Benchmark
+    public byte[] jsonLogEncoder() {
+        return jsonEncoder.encode(event);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JsonLogEncoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
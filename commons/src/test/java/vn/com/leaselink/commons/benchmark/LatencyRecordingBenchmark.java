@@ -0,0 +1,73 @@
+package vn.com.leaselink.commons.benchmark;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.metrics.LatencyHistograms;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh đo latency bằng Instant/Duration (cũ) với System.nanoTime(), có và không ghi thêm vào LatencyHistograms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyRecordingBenchmark {
+
+    private Timer timer;
+    private LatencyHistograms histograms;
+
+    @Setup
+    public void setup() {
+        timer = Timer.builder("operation.duration")
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .register(new SimpleMeterRegistry());
+        histograms = new LatencyHistograms(256);
+    }
+
+    @Benchmark
+    public void instantMillis() {
+        Instant startTime = Instant.now();
+        timer.record(Duration.between(startTime, Instant.now()).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public void nanoTime() {
+        long startNanos = System.nanoTime();
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void nanoTimeWithHistogram() {
+        long startNanos = System.nanoTime();
+        long duration = System.nanoTime() - startNanos;
+        timer.record(duration, TimeUnit.NANOSECONDS);
+        histograms.record(LatencyHistograms.OPERATION, "redis.get", duration);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LatencyRecordingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
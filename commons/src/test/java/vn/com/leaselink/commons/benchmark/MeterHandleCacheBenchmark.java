@@ -0,0 +1,104 @@
+package vn.com.leaselink.commons.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.metrics.MeterHandleCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh ghi Timer theo cách cũ (dựng List&lt;Tag&gt; + tra MeterRegistry mỗi lần) với MeterHandleCache
+ * (pack key từ id của tag, lấy Timer đã resolve sẵn).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MeterHandleCacheBenchmark {
+
+    private static final String[] ROUTES = {
+            "/api/v1/contracts/{id}",
+            "/api/v1/customers/{uuid}/contracts",
+            "/api/v1/contracts/{tsid}/schedule",
+            "/api/v1/health",
+    };
+    private static final int[] STATUSES = {200, 201, 404, 500};
+
+    private MeterRegistry registry;
+    private MeterHandleCache<Timer> cache;
+    private MeterHandleCache.Ids<String> routeIds;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+
+        int next() {
+            index = (index + 1) & 15;
+            return index;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        cache = new MeterHandleCache<>("bench");
+        routeIds = new MeterHandleCache.Ids<>(24);
+    }
+
+    @Benchmark
+    public void registryLookup(Cursor cursor) {
+        int i = cursor.next();
+        String route = ROUTES[i & 3];
+        int status = STATUSES[i >>> 2];
+        List<Tag> tags = new ArrayList<>();
+        tags.add(Tag.of("path", route));
+        tags.add(Tag.of("method", "GET"));
+        tags.add(Tag.of("status", String.valueOf(status)));
+        tags.add(Tag.of("tenant", "tenant-1"));
+        registry.timer("http.server.requests", tags).record(5, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public void handleCache(Cursor cursor) {
+        int i = cursor.next();
+        String route = ROUTES[i & 3];
+        int status = STATUSES[i >>> 2];
+        long key = ((long) routeIds.idOf(route) << 10) | status;
+        Timer timer = cache.get(key);
+        if (timer == null) {
+            timer = registry.timer("http.server.requests",
+                    "path", route, "method", "GET", "status", String.valueOf(status), "tenant", "tenant-1");
+            cache.put(key, timer);
+        }
+        timer.record(5, TimeUnit.MILLISECONDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MeterHandleCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+package vn.com.leaselink.commons.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import reactor.util.context.Context;
+import vn.com.leaselink.commons.trace.MdcThreadLocalAccessor;
+import vn.com.leaselink.commons.trace.ReactiveContextPropagation;
+import vn.com.leaselink.commons.trace.RequestContext;
+
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chi phí cấp phát của việc dựng context cho mỗi request:
+ * cách cũ (đọc header nhiều lần, HashMap, Context.of(map), MDC) và RequestContext.
+ * <p>
+ * Chạy: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=vn.com.leaselink.commons.benchmark.RequestContextBenchmark},
+ * xem cột {@code gc.alloc.rate.norm} (bytes/op).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestContextBenchmark {
+
+    private ServerHttpRequest request;
+
+    @Setup
+    public void setup() {
+        request = MockServerHttpRequest.get("/api/contracts/12345")
+                .header("X-Request-ID", "0J8XN5QZ7W3RM")
+                .header("X-User-ID", "user-42")
+                .header("X-Session-ID", "session-42")
+                .header("X-Tenant-ID", "tenant-7")
+                .header("User-Agent", "Mozilla/5.0 (benchmark)")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 52000))
+                .build();
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Context legacyContext(Blackhole blackhole) {
+        Instant startTime = Instant.now();
+        String requestPath = request.getPath().value();
+        String method = request.getMethod().name();
+        String forwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
+        String clientIP = forwardedFor != null
+                ? forwardedFor.split(",")[0].trim()
+                : request.getRemoteAddress().getHostString();
+        String userAgent = request.getHeaders().getFirst("User-Agent");
+        String requestId = request.getHeaders().getFirst("X-Request-ID");
+        String userId = request.getHeaders().getFirst("X-User-ID");
+        String sessionId = request.getHeaders().getFirst("X-Session-ID");
+        String tenantId = request.getHeaders().getFirst("X-Tenant-ID");
+
+        Context context = ReactiveContextPropagation.createContext(
+                requestId, "463ac35c9f6413ad", "a2fb4a1d1a96d312", userId, sessionId, tenantId);
+
+        MDC.put("requestId", requestId);
+        MDC.put("traceId", "463ac35c9f6413ad");
+        MDC.put("spanId", "a2fb4a1d1a96d312");
+        MDC.put("method", method);
+        MDC.put("path", requestPath);
+        MDC.put("userId", userId);
+        MDC.put("tenantId", tenantId);
+
+        // logResponse đọc lại path và method
+        String responsePath = request.getPath().value();
+        String responseMethod = request.getMethod().name();
+        MDC.clear();
+        blackhole.consume(clientIP);
+        blackhole.consume(userAgent);
+        blackhole.consume(startTime);
+        blackhole.consume(responsePath);
+        blackhole.consume(responseMethod);
+        return context;
+    }
+
+    @Benchmark
+    public Context requestContext() {
+        RequestContext requestContext = RequestContext.parse(request,
+                request.getHeaders().getFirst(RequestContext.REQUEST_ID_HEADER),
+                "463ac35c9f6413ad", "a2fb4a1d1a96d312", true, true);
+        MdcThreadLocalAccessor mdc = MdcThreadLocalAccessor.get();
+        mdc.setValue(requestContext);
+        mdc.setValue();
+        return requestContext.writeTo(Context.empty());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RequestContextBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package vn.com.leaselink.commons.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chuẩn hoá path: regex replaceAll cũ (ReactiveMetricsRecorder/GlobalErrorHandler) với RouteNormalizer,
+ * khi path đã có trong cache và khi luôn phải đi qua trie.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteNormalizerBenchmark {
+
+    private static final String[] PATHS = {
+            "/api/v1/contracts/123456",
+            "/api/v1/customers/550e8400-e29b-41d4-a716-446655440000/contracts",
+            "/api/v1/contracts/0ABCDEFGHJKMN/schedule",
+            "/api/v1/health",
+            "/api/v1/users/42/orders/9001",
+            "/api/v1/leases/7f3c2a10-1b2c-4d5e-8f90-a1b2c3d4e5f6",
+            "/actuator/prometheus",
+            "/api/v1/contracts/98765/documents/3",
+    };
+
+    private RouteNormalizer cached;
+    private RouteNormalizer uncached;
+    private int index;
+
+    @Setup
+    public void setup() {
+        cached = new RouteNormalizer();
+        uncached = new RouteNormalizer(0, 128);
+        // Trie chỉ học từ request đã match route, như khi chạy thật
+        for (String path : PATHS) {
+            cached.learn(path);
+            uncached.learn(path);
+        }
+    }
+
+    private String nextPath() {
+        index = (index + 1) & (PATHS.length - 1);
+        return PATHS[index];
+    }
+
+    @Benchmark
+    public String regex() {
+        return nextPath()
+                .replaceAll("/[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}", "/{uuid}")
+                .replaceAll("/[0-9]+", "/{id}");
+    }
+
+    @Benchmark
+    public String normalizerCached() {
+        return cached.normalize(nextPath());
+    }
+
+    @Benchmark
+    public String normalizerTrie() {
+        return uncached.normalize(nextPath());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RouteNormalizerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package vn.com.leaselink.commons.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+import vn.com.leaselink.commons.log.LoggingProperties;
+import vn.com.leaselink.commons.log.SensitiveDataMasker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * So sánh mask payload JSON 1 KB / 10 KB / 100 KB: SensitiveDataMasker (streaming một lượt)
+ * với cách regex replace thường gặp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensitiveDataMaskerBenchmark {
+
+    private static final Pattern REGEX = Pattern.compile(
+            "\"(password|ssn|creditCard|secret|token|authorization)\"\\s*:\\s*\"[^\"]*\"",
+            Pattern.CASE_INSENSITIVE);
+
+    @Param({"1024", "10240", "102400"})
+    private int payloadSize;
+
+    private SensitiveDataMasker masker;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        masker = new SensitiveDataMasker(new LoggingProperties().getSensitiveFields());
+        StringBuilder sb = new StringBuilder("{\"items\":[");
+        int i = 0;
+        while (sb.length() < payloadSize - 200) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+                    .append(",\"contractNo\":\"HD-2025-").append(i)
+                    .append("\",\"tenant\":\"tenant-").append(i % 7)
+                    .append("\",\"password\":\"p@ss-").append(i)
+                    .append("\",\"accessToken\":\"eyJhbGciOiJIUzI1NiJ9.").append(i)
+                    .append("\",\"amount\":").append(i * 1000)
+                    .append(",\"active\":true}");
+            i++;
+        }
+        sb.append("]}");
+        payload = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String streamingMasker() {
+        return masker.maskPayload(payload, MediaType.APPLICATION_JSON, false);
+    }
+
+    @Benchmark
+    public String regexMasker() {
+        String json = new String(payload, StandardCharsets.UTF_8);
+        Matcher matcher = REGEX.matcher(json);
+        return matcher.replaceAll("\"$1\":\"" + SensitiveDataMasker.MASK + "\"");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SensitiveDataMaskerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
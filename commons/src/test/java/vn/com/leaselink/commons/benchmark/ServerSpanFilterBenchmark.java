@@ -0,0 +1,120 @@
+package vn.com.leaselink.commons.benchmark;
+
+import brave.Tracing;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import vn.com.leaselink.commons.filter.ReactiveLoggingFilter;
+import vn.com.leaselink.commons.log.LogSampler;
+import vn.com.leaselink.commons.log.LoggingProperties;
+import vn.com.leaselink.commons.log.SensitiveDataMasker;
+import vn.com.leaselink.commons.metrics.ExemplarStore;
+import vn.com.leaselink.commons.metrics.LatencyHistograms;
+import vn.com.leaselink.commons.metrics.RouteNormalizer;
+import vn.com.leaselink.commons.metrics.SlowRequestDetector;
+import vn.com.leaselink.commons.trace.HttpRequestSampler;
+import vn.com.leaselink.commons.trace.HttpServerTracing;
+import vn.com.leaselink.commons.trace.TracingProperties;
+import vn.com.leaselink.commons.trace.TsidIdGenerator;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí filter chain cho mỗi request: chain rỗng so với filter server span hợp nhất
+ * (extract/tạo span, RequestContext, metrics, kết thúc span). Span được ghi nhưng không report,
+ * log response bị tắt (sample rate 0) để chỉ đo phần tracing và context.
+ * <p>
+ * {@code upstream}: request không mang header trace (sampler quyết định) hoặc mang B3 đã sample (join span).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerSpanFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean upstream;
+
+    private Tracing tracing;
+    private ReactiveLoggingFilter filter;
+    private MockServerHttpRequest.BaseBuilder<?> request;
+    private final WebFilterChain chain = exchange -> {
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        return Mono.empty();
+    };
+
+    @Setup
+    public void setup() {
+        tracing = Tracing.newBuilder()
+                .sampler(Sampler.ALWAYS_SAMPLE)
+                .build();
+        RouteNormalizer routeNormalizer = new RouteNormalizer();
+        LoggingProperties properties = new LoggingProperties();
+        properties.setSampleRate(0.0);
+        HttpRequestSampler sampler = new HttpRequestSampler(new TracingProperties.Sampling(), routeNormalizer,
+                new SimpleMeterRegistry());
+        filter = new ReactiveLoggingFilter(new HttpServerTracing(tracing, sampler), TsidIdGenerator.forNode(1),
+                new LogSampler(0.0), properties, new SensitiveDataMasker(properties.getSensitiveFields()),
+                new SlowRequestDetector(properties.getMetrics(), routeNormalizer), routeNormalizer,
+                new ExemplarStore(10, 300_000, 500),
+                new LatencyHistograms(properties.getMetrics().getLatencyHistogramMaxSeries()));
+        request = MockServerHttpRequest.get("/api/contracts/12345")
+                .header("X-Request-ID", "0J8XN5QZ7W3RM")
+                .header("X-Tenant-ID", "tenant-7")
+                .header("User-Agent", "Mozilla/5.0 (benchmark)")
+                .remoteAddress(new InetSocketAddress("10.0.0.1", 52000));
+        if (upstream) {
+            request.header("b3", "463ac35c9f6413ad48485a3953bb6124-a2fb4a1d1a96d312-1");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        tracing.close();
+    }
+
+    @Benchmark
+    public Object emptyChain() {
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        chain.filter(exchange).block();
+        return exchange;
+    }
+
+    @Benchmark
+    public Object serverSpanFilter() {
+        ServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ServerSpanFilterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,90 @@
+package vn.com.leaselink.commons.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.trace.reporter.InMemorySender;
+import vn.com.leaselink.commons.trace.reporter.MicrometerReporterMetrics;
+import vn.com.leaselink.commons.trace.reporter.TimedSender;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.reporter.AsyncReporter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput của pipeline report span (AsyncReporter + metrics + TimedSender) với {@link InMemorySender},
+ * không cần collector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SpanReporterBenchmark {
+
+    @Param({"1000", "10000"})
+    public int queuedMaxSpans;
+
+    private MeterRegistry registry;
+    private InMemorySender sender;
+    private AsyncReporter<Span> reporter;
+    private Span span;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        sender = new InMemorySender(500_000, 0);
+        reporter = AsyncReporter.builder(new TimedSender(sender, registry))
+                .queuedMaxSpans(queuedMaxSpans)
+                .messageTimeout(100, TimeUnit.MILLISECONDS)
+                .metrics(new MicrometerReporterMetrics(registry))
+                .build();
+        span = Span.newBuilder()
+                .traceId("463ac35c9f6413ad48485a3953bb6124")
+                .id("a2fb4a1d1a96d312")
+                .name("get /api/loans/{id}")
+                .kind(Span.Kind.SERVER)
+                .localEndpoint(Endpoint.newBuilder().serviceName("commons").build())
+                .timestamp(1_700_000_000_000_000L)
+                .duration(12_345L)
+                .putTag("http.method", "GET")
+                .putTag("http.status_code", "200")
+                .build();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        reporter.flush();
+        reporter.close();
+    }
+
+    @Benchmark
+    public void report() {
+        reporter.report(span);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SpanReporterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
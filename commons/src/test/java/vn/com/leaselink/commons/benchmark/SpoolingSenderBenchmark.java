@@ -0,0 +1,145 @@
+package vn.com.leaselink.commons.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.trace.reporter.SpoolingSender;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+import zipkin2.reporter.okhttp3.OkHttpSender;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Spool span khi collector lỗi và gửi lại khi collector hồi phục, collector là một HttpServer local
+ * trả 503 hoặc 202 tuỳ trạng thái:
+ * <ul>
+ *     <li>{@code spoolWhileDown}: ghi {@value #BATCHES} batch vào spool khi collector lỗi</li>
+ *     <li>{@code drainAfterRecovery}: spool có sẵn {@value #BATCHES} batch, collector hồi phục, đo tới khi
+ *     replayer gửi hết</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpoolingSenderBenchmark {
+
+    private static final int BATCHES = 1000;
+    private static final int SPANS_PER_BATCH = 20;
+
+    private HttpServer collector;
+    private volatile boolean collectorUp;
+    private Path directory;
+    private MeterRegistry registry;
+    private SpoolingSender sender;
+    private List<byte[]> batch;
+
+    @Setup(Level.Trial)
+    public void startCollector() throws IOException {
+        collector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        collector.createContext("/api/v2/spans", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            exchange.sendResponseHeaders(collectorUp ? 202 : 503, -1);
+            exchange.close();
+        });
+        collector.start();
+
+        Span span = Span.newBuilder()
+                .traceId("463ac35c9f6413ad48485a3953bb6124")
+                .id("a2fb4a1d1a96d312")
+                .name("get /api/loans/{id}")
+                .kind(Span.Kind.SERVER)
+                .localEndpoint(Endpoint.newBuilder().serviceName("commons").build())
+                .timestamp(1_700_000_000_000_000L)
+                .duration(12_345L)
+                .putTag("http.method", "GET")
+                .putTag("http.status_code", "500")
+                .putTag("error", "Internal Server Error")
+                .build();
+        byte[] encoded = SpanBytesEncoder.JSON_V2.encode(span);
+        batch = new ArrayList<>(SPANS_PER_BATCH);
+        for (int i = 0; i < SPANS_PER_BATCH; i++) {
+            batch.add(encoded);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("span-spool");
+        registry = new SimpleMeterRegistry();
+        collectorUp = false;
+        OkHttpSender http = OkHttpSender.create("http://127.0.0.1:" + collector.getAddress().getPort() + "/api/v2/spans");
+        sender = new SpoolingSender(http, directory, 4 * 1024 * 1024, 512L * 1024 * 1024,
+                Duration.ofMillis(1), Duration.ofMillis(10), registry);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        sender.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCollector() {
+        collector.stop(0);
+    }
+
+    @Benchmark
+    public double spoolWhileDown() throws IOException {
+        for (int i = 0; i < BATCHES; i++) {
+            sender.sendSpans(batch).execute();
+        }
+        return registry.get("tracing.spool.pending.bytes").gauge().value();
+    }
+
+    @Benchmark
+    public double drainAfterRecovery() throws IOException, InterruptedException {
+        for (int i = 0; i < BATCHES; i++) {
+            sender.sendSpans(batch).execute();
+        }
+        collectorUp = true;
+        while (registry.get("tracing.spool.pending.bytes").gauge().value() > 0) {
+            Thread.sleep(1);
+        }
+        return registry.get("tracing.spool.batches").tag("result", "replayed").counter().count();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SpoolingSenderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package vn.com.leaselink.commons.benchmark;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vn.com.leaselink.commons.trace.TailSamplingSpanHandler;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chi phí tail sampling cho một trace gồm local root và {@code children} span con, head sampler luôn bỏ:
+ * không có tail sampling (span không được ghi) so với buffer + quyết định ở local root.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TailSamplingBenchmark {
+
+    @Param({"3"})
+    public int children;
+
+    private Tracing headOnly;
+    private Tracing tailSampling;
+    private TailSamplingSpanHandler tailHandler;
+    private final LongAdder reported = new LongAdder();
+
+    @Setup
+    public void setup() {
+        headOnly = Tracing.newBuilder()
+                .sampler(Sampler.NEVER_SAMPLE)
+                .build();
+        SpanHandler downstream = new SpanHandler() {
+            @Override
+            public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                reported.increment();
+                return true;
+            }
+        };
+        tailHandler = new TailSamplingSpanHandler(downstream, 1000, 30000, 32L * 1024 * 1024, 10_000,
+                List.of("/api/payments/**"), new SimpleMeterRegistry());
+        tailSampling = Tracing.newBuilder()
+                .sampler(Sampler.NEVER_SAMPLE)
+                .alwaysSampleLocal()
+                .addSpanHandler(tailHandler)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        headOnly.close();
+        tailSampling.close();
+        tailHandler.close();
+    }
+
+    @Benchmark
+    public void headSamplingOnly() {
+        trace(headOnly.tracer());
+    }
+
+    @Benchmark
+    public void tailSampling() {
+        trace(tailSampling.tracer());
+    }
+
+    private void trace(Tracer tracer) {
+        Span root = tracer.newTrace().name("get /api/loans/{id}").kind(Span.Kind.SERVER).start();
+        root.tag("http.route", "/api/loans/{id}");
+        for (int i = 0; i < children; i++) {
+            tracer.newChild(root.context()).name("db.query").kind(Span.Kind.CLIENT).start()
+                    .tag("db.statement", "select * from loan where id = ?")
+                    .finish();
+        }
+        root.tag("http.status_code", "200").finish();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TailSamplingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,163 @@
+package vn.com.leaselink.commons.log;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Appender đích chặn được bằng {@link #gate} để giữ worker lại, qua đó làm đầy buffer một cách chủ động
+ */
+class RingBufferAsyncAppenderTest {
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+    private RecordingAppender target;
+    private RingBufferAsyncAppender appender;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        logger = loggerContext.getLogger(RingBufferAsyncAppenderTest.class);
+        target = new RecordingAppender();
+        target.setContext(loggerContext);
+        target.start();
+        appender = new RingBufferAsyncAppender();
+        appender.setContext(loggerContext);
+        appender.setName("ASYNC");
+        appender.addAppender(target);
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.gate.countDown();
+        appender.stop();
+        loggerContext.stop();
+    }
+
+    @Test
+    void keepsPerProducerOrderWithoutLoss() throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 10_000;
+        target.gate.countDown();
+        appender.setBufferSize(1024);
+        appender.setNeverBlock(false);
+        appender.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String producer = "p" + p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    appender.doAppend(event(producer + ":" + i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        appender.stop();
+
+        assertThat(appender.getDroppedCount()).isZero();
+        assertThat(target.messages).hasSize(producers * eventsPerProducer);
+        Map<String, Integer> lastSeen = new HashMap<>();
+        for (String message : target.messages) {
+            String[] parts = message.split(":");
+            int sequence = Integer.parseInt(parts[1]);
+            assertThat(sequence).as("order of %s", parts[0]).isEqualTo(lastSeen.getOrDefault(parts[0], -1) + 1);
+            lastSeen.put(parts[0], sequence);
+        }
+    }
+
+    @Test
+    void dropsWhenFullAndNeverBlock() throws Exception {
+        appender.setBufferSize(4);
+        appender.setNeverBlock(true);
+        appender.start();
+
+        // Event đầu được worker lấy ra và kẹt ở appender đích, 4 event sau lấp đầy buffer
+        appender.doAppend(event("0"));
+        assertThat(target.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 4; i++) {
+            appender.doAppend(event(String.valueOf(i)));
+        }
+        assertThat(appender.getQueueDepth()).isEqualTo(4);
+
+        for (int i = 5; i < 8; i++) {
+            appender.doAppend(event(String.valueOf(i)));
+        }
+        assertThat(appender.getDroppedCount()).isEqualTo(3);
+
+        target.gate.countDown();
+        appender.stop();
+        assertThat(target.messages).containsExactly("0", "1", "2", "3", "4");
+    }
+
+    @Test
+    void flushesQueuedEventsOnStop() throws Exception {
+        appender.setBufferSize(16);
+        appender.setMaxFlushTimeMillis(5000);
+        appender.start();
+
+        appender.doAppend(event("0"));
+        assertThat(target.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < 10; i++) {
+            appender.doAppend(event(String.valueOf(i)));
+        }
+
+        // Nhả appender đích khi stop() đã bắt đầu: phần còn lại phải được ghi nốt trước khi stop() trả về
+        Thread release = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            target.gate.countDown();
+        });
+        release.start();
+        appender.stop();
+        release.join();
+
+        assertThat(appender.getDroppedCount()).isZero();
+        assertThat(target.messages).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+        assertThat(target.isStarted()).isFalse();
+    }
+
+    private ILoggingEvent event(String message) {
+        return new LoggingEvent(Logger.class.getName(), logger, Level.INFO, message, null, null);
+    }
+
+    private static final class RecordingAppender extends AppenderBase<ILoggingEvent> {
+
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(event.getFormattedMessage());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package vn.com.leaselink.commons.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vn.com.leaselink.commons.log.LoggingProperties;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardinalityLimitingMeterFilterTest {
+
+    private LoggingProperties.MetricsLog config;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        config = new LoggingProperties.MetricsLog();
+        config.setMaxTagValues(3);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void foldsValuesOverBudgetIntoOther() {
+        install();
+        for (int i = 0; i < 10; i++) {
+            registry.counter("orders", "tenant", "t" + i).increment();
+        }
+        // Giá trị đã được nhận trước đó vẫn giữ nguyên
+        registry.counter("orders", "tenant", "t0").increment();
+
+        assertThat(tenants("orders")).containsExactlyInAnyOrder("t0", "t1", "t2",
+                CardinalityLimitingMeterFilter.OVERFLOW_VALUE);
+        assertThat(registry.get("orders").tag("tenant", "t0").counter().count()).isEqualTo(2);
+        assertThat(registry.get("orders").tag("tenant", CardinalityLimitingMeterFilter.OVERFLOW_VALUE).counter().count())
+                .isEqualTo(7);
+        assertThat(rejected("budget")).isEqualTo(7);
+    }
+
+    @Test
+    void appliesPerMeterBudgets() {
+        config.setTagValueBudgets(Map.of("payments", 1));
+        install();
+        for (int i = 0; i < 3; i++) {
+            registry.counter("payments", "tenant", "t" + i).increment();
+            registry.counter("orders", "tenant", "t" + i).increment();
+        }
+
+        assertThat(tenants("payments")).containsExactlyInAnyOrder("t0", CardinalityLimitingMeterFilter.OVERFLOW_VALUE);
+        assertThat(tenants("orders")).containsExactlyInAnyOrder("t0", "t1", "t2");
+    }
+
+    @Test
+    void dropsForbiddenTagKeys() {
+        install();
+        registry.counter("orders", Tags.of("traceId", "463ac35c9f6413ad", "status", "200", "userId", "u1")).increment();
+        registry.counter("orders", Tags.of("traceId", "a2fb4a1d1a96d312", "status", "200", "userId", "u2")).increment();
+
+        assertThat(registry.find("orders").counters()).hasSize(1);
+        Meter.Id id = registry.get("orders").counter().getId();
+        assertThat(id.getTags()).extracting(Tag::getKey).containsExactly("status");
+        assertThat(registry.get("orders").counter().count()).isEqualTo(2);
+        assertThat(rejected("forbidden")).isEqualTo(4);
+    }
+
+    private void install() {
+        CardinalityLimitingMeterFilter filter = new CardinalityLimitingMeterFilter(config);
+        registry.config().meterFilter(filter);
+        filter.bindTo(registry);
+    }
+
+    private Set<String> tenants(String name) {
+        return registry.find(name).counters().stream()
+                .map(counter -> counter.getId().getTag("tenant"))
+                .collect(Collectors.toSet());
+    }
+
+    private double rejected(String reason) {
+        return registry.get("metrics.cardinality.rejected").tag("reason", reason).functionCounter().count();
+    }
+}
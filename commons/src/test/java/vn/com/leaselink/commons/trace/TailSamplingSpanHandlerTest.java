@@ -0,0 +1,192 @@
+package vn.com.leaselink.commons.trace;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chạy handler sau một {@link Tracing} thật (head sampler NEVER_SAMPLE + alwaysSampleLocal), downstream ghi lại
+ * tên các span được report
+ */
+class TailSamplingSpanHandlerTest {
+
+    private static final long LATENCY_THRESHOLD_MILLIS = 1000;
+    private static final long DECISION_WAIT_MILLIS = 30_000;
+    private static final long MAX_BUFFERED_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_DECIDED_TRACES = 10_000;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> reported = new CopyOnWriteArrayList<>();
+    private TailSamplingSpanHandler handler;
+    private Tracing tracing;
+    private Tracer tracer;
+
+    @AfterEach
+    void close() {
+        tracing.close();
+        handler.close();
+    }
+
+    @Test
+    void keepsTraceWithErrorSpanOr5xxRoot() {
+        start(DECISION_WAIT_MILLIS, MAX_BUFFERED_BYTES, List.of());
+
+        Span errorRoot = root("error-root");
+        tracer.newChild(errorRoot.context()).name("error-child").start().tag("error", "boom").finish();
+        errorRoot.finish();
+
+        root("5xx-root").tag("http.status_code", "503").finish();
+
+        Span okRoot = root("ok-root");
+        tracer.newChild(okRoot.context()).name("ok-child").start().finish();
+        okRoot.tag("http.status_code", "200").finish();
+
+        assertThat(reported).containsExactly("error-child", "error-root", "5xx-root");
+        assertThat(decisions("kept", "error")).isEqualTo(2);
+        assertThat(decisions("dropped", "none")).isEqualTo(1);
+    }
+
+    @Test
+    void keepsSlowRoot() {
+        start(DECISION_WAIT_MILLIS, MAX_BUFFERED_BYTES, List.of());
+        long startMicros = 1_700_000_000_000_000L;
+
+        Span slow = tracer.newTrace().name("slow-root").start(startMicros);
+        slow.finish(startMicros + LATENCY_THRESHOLD_MILLIS * 1000 + 1);
+        Span fast = tracer.newTrace().name("fast-root").start(startMicros);
+        fast.finish(startMicros + 1000);
+
+        assertThat(reported).containsExactly("slow-root");
+        assertThat(decisions("kept", "slow")).isEqualTo(1);
+    }
+
+    @Test
+    void keepsMatchingRoutes() {
+        start(DECISION_WAIT_MILLIS, MAX_BUFFERED_BYTES, List.of("/api/payments/**"));
+
+        root("payment").tag("http.route", "/api/payments/{id}").finish();
+        root("loan").tag("http.route", "/api/loans/{id}").finish();
+        // Không có http.route thì khớp theo tên span
+        root("/api/payments/refunds").finish();
+
+        assertThat(reported).containsExactly("payment", "/api/payments/refunds");
+        assertThat(decisions("kept", "route")).isEqualTo(2);
+    }
+
+    @Test
+    void lateSpanFollowsDecisionOfItsTrace() {
+        start(DECISION_WAIT_MILLIS, MAX_BUFFERED_BYTES, List.of());
+
+        Span dropped = root("dropped-root");
+        Span droppedChild = tracer.newChild(dropped.context()).name("dropped-late").start();
+        dropped.finish();
+        droppedChild.finish();
+
+        Span kept = root("kept-root");
+        Span keptChild = tracer.newChild(kept.context()).name("kept-late").start();
+        kept.tag("http.status_code", "500").finish();
+        keptChild.finish();
+
+        assertThat(reported).containsExactly("kept-root", "kept-late");
+        assertThat(decisions("dropped", "late")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOldestTracesOverMemoryBudget() {
+        // Mỗi stripe chỉ đủ chỗ cho vài span
+        long maxBufferedBytes = 16 * 1024;
+        start(DECISION_WAIT_MILLIS, maxBufferedBytes, List.of());
+
+        List<Span> roots = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Span root = root("root-" + i);
+            tracer.newChild(root.context()).name("child-" + i).start().tag("error", "boom").finish();
+            roots.add(root);
+        }
+
+        assertThat(evicted("memory")).isPositive();
+        assertThat(gauge("tracing.tail.buffered.bytes")).isLessThanOrEqualTo(maxBufferedBytes);
+        assertThat(gauge("tracing.tail.buffered.traces")).isEqualTo(200 - evicted("memory"));
+
+        // Trace bị evict mất span lỗi nên root bị bỏ, trace còn trong buffer được report đủ
+        roots.forEach(Span::finish);
+        long kept = 200 - (long) evicted("memory");
+        assertThat(reported.stream().filter(name -> name.startsWith("child-")).count()).isEqualTo(kept);
+        assertThat(reported.stream().filter(name -> name.startsWith("root-")).count()).isEqualTo(kept);
+    }
+
+    @Test
+    void expiresTracesWithoutRootAfterDecisionWait() throws InterruptedException {
+        start(50, MAX_BUFFERED_BYTES, List.of());
+
+        Span root = root("pending-root");
+        tracer.newChild(root.context()).name("pending-child").start().tag("error", "boom").finish();
+        assertThat(gauge("tracing.tail.buffered.traces")).isEqualTo(1);
+
+        await(() -> evicted("expired") == 1);
+        assertThat(gauge("tracing.tail.buffered.traces")).isZero();
+        assertThat(gauge("tracing.tail.buffered.bytes")).isZero();
+
+        // Root kết thúc sau khi buffer đã bị bỏ: quyết định chỉ dựa trên root
+        root.finish();
+        assertThat(reported).isEmpty();
+    }
+
+    private void start(long decisionWaitMillis, long maxBufferedBytes, List<String> keepRoutes) {
+        SpanHandler downstream = new SpanHandler() {
+            @Override
+            public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                reported.add(span.name());
+                return true;
+            }
+        };
+        handler = new TailSamplingSpanHandler(downstream, LATENCY_THRESHOLD_MILLIS, decisionWaitMillis,
+                maxBufferedBytes, MAX_DECIDED_TRACES, keepRoutes, registry);
+        tracing = Tracing.newBuilder()
+                .sampler(Sampler.NEVER_SAMPLE)
+                .alwaysSampleLocal()
+                .addSpanHandler(handler)
+                .build();
+        tracer = tracing.tracer();
+    }
+
+    private Span root(String name) {
+        return tracer.newTrace().name(name).kind(Span.Kind.SERVER).start();
+    }
+
+    private double decisions(String decision, String reason) {
+        return registry.get("tracing.tail.decisions").tag("decision", decision).tag("reason", reason)
+                .counter().count();
+    }
+
+    private double evicted(String reason) {
+        return registry.get("tracing.tail.evicted").tag("reason", reason).counter().count();
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("timed out waiting for expiry").isNegative();
+            Thread.sleep(10);
+        }
+    }
+}
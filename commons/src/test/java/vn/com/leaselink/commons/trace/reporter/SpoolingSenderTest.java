@@ -0,0 +1,158 @@
+package vn.com.leaselink.commons.trace.reporter;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import zipkin2.reporter.okhttp3.OkHttpSender;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Collector giả bằng {@link HttpServer}: trả 503 cho tới khi được bật, sau đó 202 và ghi lại body theo thứ tự nhận
+ */
+class SpoolingSenderTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+    private static final Duration REPLAY_INTERVAL = Duration.ofMillis(50);
+    private static final Duration MAX_BACKOFF = Duration.ofMillis(200);
+
+    @TempDir
+    Path spoolDirectory;
+
+    private HttpServer collector;
+    private final AtomicBoolean available = new AtomicBoolean();
+    private final AtomicInteger rejectedRequests = new AtomicInteger();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startCollector() throws IOException {
+        collector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        collector.createContext("/api/v2/spans", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] bytes = body.readAllBytes();
+                if (available.get()) {
+                    received.add(new String(bytes, StandardCharsets.UTF_8));
+                    exchange.sendResponseHeaders(202, -1);
+                } else {
+                    rejectedRequests.incrementAndGet();
+                    exchange.sendResponseHeaders(503, -1);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        collector.start();
+    }
+
+    @AfterEach
+    void stopCollector() {
+        collector.stop(0);
+    }
+
+    @Test
+    void replaysSpooledBatchesExactlyOnceInOrder() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpoolingSender sender = spoolingSender(meterRegistry);
+        try {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                // Collector trả 503: batch được spool, call vẫn thành công
+                sender.sendSpans(batch(i)).execute();
+                expected.add(json(i));
+            }
+            assertThat(rejectedRequests.get()).isPositive();
+            assertThat(received).isEmpty();
+
+            available.set(true);
+            await(() -> received.size() >= expected.size());
+            // Thêm vài chu kỳ replay để chắc không batch nào bị gửi lại lần nữa
+            Thread.sleep(REPLAY_INTERVAL.toMillis() * 4);
+            assertThat(received).containsExactlyElementsOf(expected);
+            assertThat(meterRegistry.get("tracing.spool.batches").tag("result", "replayed").counter().count())
+                    .isEqualTo(expected.size());
+
+            // Spool đã trống, batch mới được gửi thẳng
+            sender.sendSpans(batch(5)).execute();
+            expected.add(json(5));
+            assertThat(received).containsExactlyElementsOf(expected);
+            assertThat(meterRegistry.get("tracing.spool.batches").tag("result", "sent").counter().count())
+                    .isEqualTo(1);
+        } finally {
+            sender.close();
+        }
+    }
+
+    @Test
+    void replaysPendingBatchesAfterReopen() throws Exception {
+        SpoolingSender sender = spoolingSender(new SimpleMeterRegistry());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sender.sendSpans(batch(i)).execute();
+            expected.add(json(i));
+        }
+        sender.close();
+        assertThat(received).isEmpty();
+
+        available.set(true);
+        SpoolingSender reopened = spoolingSender(new SimpleMeterRegistry());
+        try {
+            await(() -> received.size() >= expected.size());
+            Thread.sleep(REPLAY_INTERVAL.toMillis() * 4);
+            assertThat(received).containsExactlyElementsOf(expected);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private SpoolingSender spoolingSender(SimpleMeterRegistry meterRegistry) throws IOException {
+        OkHttpSender delegate = OkHttpSender.newBuilder()
+                .endpoint("http://127.0.0.1:" + collector.getAddress().getPort() + "/api/v2/spans")
+                .compressionEnabled(false)
+                .build();
+        return new SpoolingSender(delegate, spoolDirectory, SEGMENT_BYTES, 4L * SEGMENT_BYTES,
+                REPLAY_INTERVAL, MAX_BACKOFF, meterRegistry);
+    }
+
+    /**
+     * Batch gồm hai "span" JSON, nội dung chỉ để phân biệt batch
+     */
+    private static List<byte[]> batch(int index) {
+        return List.of(span(index, 0), span(index, 1));
+    }
+
+    private static byte[] span(int batch, int span) {
+        return ("{\"id\":\"" + batch + "-" + span + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Body mà OkHttpSender gửi cho batch (JSON list)
+     */
+    private static String json(int index) {
+        return "[" + new String(span(index, 0), StandardCharsets.UTF_8) + ","
+                + new String(span(index, 1), StandardCharsets.UTF_8) + "]";
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("timed out waiting for replay").isNegative();
+            Thread.sleep(10);
+        }
+    }
+}